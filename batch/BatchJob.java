@@ -0,0 +1,30 @@
+package sokoban.batch;
+
+import java.nio.file.Path;
+
+/**
+ * A pair of a level file and a solution file to verify.
+ */
+public class BatchJob {
+    private final Path level;
+    private final Path solution;
+
+    public BatchJob(Path level, Path solution) {
+        assert level != null && solution != null;
+        this.level = level;
+        this.solution = solution;
+    }
+
+    public Path getLevel() {
+        return level;
+    }
+
+    public Path getSolution() {
+        return solution;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BatchJob(%s, %s)", level, solution);
+    }
+}
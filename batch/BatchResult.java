@@ -0,0 +1,83 @@
+package sokoban.batch;
+
+/**
+ * Outcome of verifying a {@link BatchJob}.
+ */
+public class BatchResult {
+    private final BatchJob job;
+    private final boolean solved;
+    private final int moves;
+    private final long nanos;
+    private final String error;
+
+    BatchResult(BatchJob job, boolean solved, int moves, long nanos, String error) {
+        this.job = job;
+        this.solved = solved;
+        this.moves = moves;
+        this.nanos = nanos;
+        this.error = error;
+    }
+
+    public BatchJob getJob() {
+        return job;
+    }
+
+    /**
+     * Return whether replaying the solution solved the level.
+     */
+    public boolean isSolved() {
+        return solved;
+    }
+
+    /**
+     * Return the number of moves replayed until the level was solved or
+     * the solution ended.
+     */
+    public int getMoves() {
+        return moves;
+    }
+
+    /**
+     * Return the time spent parsing and replaying in nanoseconds.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Return the reason the job could not be run, or null.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Format the result as a single line of JSON.
+     */
+    public String toJson() {
+        StringBuilder out = new StringBuilder();
+        out.append("{\"level\":").append(quote(job.getLevel().toString()));
+        out.append(",\"solution\":").append(quote(job.getSolution().toString()));
+        out.append(",\"solved\":").append(solved);
+        out.append(",\"moves\":").append(moves);
+        out.append(",\"nanos\":").append(nanos);
+        if (error != null) {
+            out.append(",\"error\":").append(quote(error));
+        }
+        return out.append('}').toString();
+    }
+
+    private static String quote(String s) {
+        StringBuilder out = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+}
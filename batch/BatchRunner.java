@@ -0,0 +1,205 @@
+package sokoban.batch;
+
+import sokoban.game.Game;
+import sokoban.io.input.Action;
+import sokoban.io.input.ActionQueue;
+import sokoban.io.input.LurdDecoder;
+import sokoban.io.input.ScriptedInputHandler;
+import sokoban.io.output.NullRenderer;
+import sokoban.parser.LevelTemplateCache;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Verifies many (level, solution) pairs in parallel.
+ *
+ * Every job gets its own {@link ScriptedInputHandler} and {@link NullRenderer}
+ * injected into its game, so jobs share no mutable state and run on a pool
+ * with one thread per core by default. Levels are parsed once per run and
+ * shared by all jobs on the same level (see {@link LevelTemplateCache}).
+ *
+ * Jobs are read from a manifest file, with one job per line consisting of
+ * the level path and the solution path separated by whitespace (relative
+ * paths are resolved against the manifest's directory; empty lines and lines
+ * starting with '#' are ignored), or from a directory, pairing every
+ * {@code name.level} file with {@code name.solution}.
+ *
+ * Solutions are given in LURD notation (see {@link LurdDecoder}) and may
+ * span several lines.
+ *
+ * Results are written as one line of JSON per job, in the order of the jobs.
+ */
+public class BatchRunner {
+    private final int threads;
+
+    public BatchRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads number of jobs run at the same time, must be positive
+     */
+    public BatchRunner(int threads) {
+        assert threads > 0;
+        this.threads = threads;
+    }
+
+    /**
+     * Run all given jobs and return their results in the same order.
+     */
+    public List<BatchResult> run(List<BatchJob> jobs) throws InterruptedException {
+        List<BatchResult> results = new ArrayList<>();
+        run(jobs, results::add);
+        return results;
+    }
+
+    /**
+     * Run all given jobs and hand their results to the given consumer in
+     * the order of the jobs, as soon as they are available.
+     */
+    public void run(List<BatchJob> jobs, Consumer<BatchResult> consumer)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        LevelTemplateCache templates = new LevelTemplateCache();
+        try {
+            List<Future<BatchResult>> futures = new ArrayList<>();
+            for (BatchJob job : jobs) {
+                futures.add(pool.submit(() -> verify(job, templates)));
+            }
+            for (Future<BatchResult> future : futures) {
+                try {
+                    consumer.accept(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Replay the solution of the given job on its level.
+     */
+    public static BatchResult verify(BatchJob job) {
+        return verify(job, new LevelTemplateCache());
+    }
+
+    /**
+     * Replay the solution of the given job on its level, taking the level
+     * from the given cache.
+     */
+    static BatchResult verify(BatchJob job, LevelTemplateCache templates) {
+        long start = System.nanoTime();
+        try {
+            String level = new String(Files.readAllBytes(job.getLevel()), StandardCharsets.UTF_8);
+            Action[] actions = parseSolution(new String(Files.readAllBytes(job.getSolution()), StandardCharsets.UTF_8));
+
+            ScriptedInputHandler handler = new ScriptedInputHandler(actions);
+            Game game;
+            try {
+                game = templates.newGame(level, new NullRenderer(), handler);
+            } catch (IOException e) {
+                return new BatchResult(job, false, 0, System.nanoTime() - start, "could not parse level");
+            }
+            if (actions.length > 0) {
+                game.run();
+            }
+            int moves = actions.length - handler.remaining();
+            return new BatchResult(job, game.isOver(), moves, System.nanoTime() - start, null);
+        } catch (IOException | RuntimeException | AssertionError e) {
+            return new BatchResult(job, false, 0, System.nanoTime() - start, e.toString());
+        }
+    }
+
+    /**
+     * Translate a solution in LURD notation (see {@link LurdDecoder}) into actions.
+     * @throws IllegalArgumentException if the solution is not valid LURD
+     */
+    static Action[] parseSolution(String text) {
+        ActionQueue actions = new ActionQueue();
+        if (!LurdDecoder.decode(text.replace('\n', ' '), actions)) {
+            throw new IllegalArgumentException("invalid solution");
+        }
+        return actions.toArray();
+    }
+
+    /**
+     * Read the jobs from a manifest file or a directory (see class comment).
+     */
+    public static List<BatchJob> readJobs(Path source) throws IOException {
+        List<BatchJob> jobs = new ArrayList<>();
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.list(source)) {
+                files.filter(p -> p.getFileName().toString().endsWith(".level"))
+                        .sorted()
+                        .forEach(level -> {
+                            String name = level.getFileName().toString();
+                            Path solution = level.resolveSibling(
+                                    name.substring(0, name.length() - ".level".length()) + ".solution");
+                            jobs.add(new BatchJob(level, solution));
+                        });
+            }
+            return jobs;
+        }
+
+        Path base = source.toAbsolutePath().getParent();
+        for (String line : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length != 2) {
+                throw new IOException("invalid manifest line: " + line);
+            }
+            jobs.add(new BatchJob(base.resolve(parts[0]), base.resolve(parts[1])));
+        }
+        return jobs;
+    }
+
+    /**
+     * Usage: {@code BatchRunner [-threads N] [-out FILE] MANIFEST|DIRECTORY}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path out = null;
+        Path source = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-out") && i + 1 < args.length) {
+                out = Paths.get(args[++i]);
+            } else {
+                source = Paths.get(args[i]);
+            }
+        }
+        if (source == null) {
+            System.err.println("usage: BatchRunner [-threads N] [-out FILE] MANIFEST|DIRECTORY");
+            System.exit(2);
+        }
+
+        Writer writer = out == null
+                ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                : Files.newBufferedWriter(out, StandardCharsets.UTF_8);
+        try (PrintWriter printer = new PrintWriter(new BufferedWriter(writer))) {
+            new BatchRunner(threads).run(readJobs(source), result -> printer.println(result.toJson()));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package sokoban.benchmark;
+
+import sokoban.game.Game;
+import sokoban.io.input.ScriptedInputHandler;
+import sokoban.io.output.NullRenderer;
+import sokoban.io.output.Renderer;
+import sokoban.parser.PlaintextParser;
+
+/**
+ * Generates levels of arbitrary size in the plaintext format for the
+ * benchmarks.
+ *
+ * A generated level is a walled rectangle. The second row holds the given
+ * lane, which starts with the player and is used by the move benchmarks;
+ * the remaining rows are filled with box/goal pairs on every other cell,
+ * so the boxes never touch each other.
+ */
+final class Levels {
+    private Levels() {}
+
+    /**
+     * Return the text of a level.
+     * @param width width including the outer walls, at least the lane length plus 2
+     * @param height height including the outer walls, at least 3
+     * @param boxes number of boxes (and goals) outside of the lane; a goal is
+     *              added if the level would have none
+     * @param lane content of the second row, starting with 'P'
+     */
+    static String generate(int width, int height, int boxes, String lane) {
+        assert lane.startsWith("P") && lane.length() <= width - 2 && height >= 3;
+
+        char[][] cells = new char[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean border = x == 0 || y == 0 || x == width - 1 || y == height - 1;
+                cells[y][x] = border ? '#' : ' ';
+            }
+        }
+        for (int x = 0; x < lane.length(); x++) {
+            cells[1][x + 1] = lane.charAt(x);
+        }
+
+        int goals = boxes + Math.max(0, count(lane, 'B') - count(lane, 'G'));
+        if (goals == 0 && count(lane, 'G') == 0) {
+            goals = 1;
+        }
+        assert boxes + goals <= capacity(width, height) : "level too small";
+
+        int placedBoxes = 0, placedGoals = 0;
+        for (int y = 3; y < height - 1; y += 2) {
+            for (int x = 1; x < width - 1; x += 2) {
+                if (placedBoxes < boxes && (placedBoxes <= placedGoals || placedGoals == goals)) {
+                    cells[y][x] = 'B';
+                    placedBoxes++;
+                } else if (placedGoals < goals) {
+                    cells[y][x] = 'G';
+                    placedGoals++;
+                }
+            }
+        }
+
+        StringBuilder text = new StringBuilder();
+        text.append(width).append(' ').append(height).append('\n');
+        for (char[] row : cells) {
+            text.append(row).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Return the number of boxes and goals that fit outside of the lane of a
+     * level of the given size.
+     */
+    static int capacity(int width, int height) {
+        return Math.max(0, (height - 3) / 2) * ((width - 1) / 2);
+    }
+
+    /**
+     * Return the number of boxes that fit outside of the lane of a level of
+     * the given size, leaving room for their goals and one more for the lane.
+     */
+    static int fittingBoxes(int width, int height) {
+        return Math.max(0, capacity(width, height) - 1) / 2;
+    }
+
+    /**
+     * Return a game for the given level text without rendering and input.
+     */
+    static Game parse(String text) {
+        return parse(text, new NullRenderer());
+    }
+
+    /**
+     * Return a game for the given level text using the given renderer.
+     */
+    static Game parse(String text, Renderer renderer) {
+        return new PlaintextParser(renderer, new ScriptedInputHandler()).makeGameFromText(text);
+    }
+
+    private static int count(String text, char c) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == c) count++;
+        }
+        return count;
+    }
+}
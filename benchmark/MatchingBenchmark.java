@@ -0,0 +1,91 @@
+package sokoban.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sokoban.solver.MatchingEvaluator;
+import sokoban.solver.MatchingHeuristic;
+import sokoban.solver.NearestGoalHeuristic;
+import sokoban.solver.SolverLevel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the per-push cost of the {@link MatchingEvaluator} against
+ * solving the matching from scratch and against the
+ * {@link NearestGoalHeuristic}.
+ *
+ * The lane of the level holds a box that is pushed right and back, so
+ * every benchmark evaluates two pushes and leaves the evaluator in the
+ * state it found it in.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchingBenchmark {
+    /** Edge length of the (square) board. */
+    @Param({"16", "64", "256"})
+    int size;
+
+    /** Number of boxes on the board besides the lane; capped by what fits on the board. */
+    @Param({"1", "16", "128"})
+    int boxes;
+
+    private MatchingEvaluator evaluator;
+    private MatchingHeuristic matching;
+    private NearestGoalHeuristic nearest;
+    private int[] initial, pushed;
+    private int from, to;
+
+    @Setup
+    public void setUp() {
+        int boxes = Math.min(this.boxes, Levels.fittingBoxes(size, size));
+        SolverLevel level = new SolverLevel(Levels.parse(Levels.generate(size, size, boxes, "PB ")));
+        evaluator = new MatchingEvaluator(level);
+        matching = new MatchingHeuristic(level);
+        nearest = new NearestGoalHeuristic(level);
+
+        // the lane comes first, so the box in the lane has the smallest cell
+        initial = level.getInitialBoxes();
+        from = initial[0];
+        to = from + 1;
+        pushed = initial.clone();
+        pushed[0] = to;
+        evaluator.reset(initial);
+    }
+
+    @Benchmark
+    public int incrementalPush() {
+        evaluator.moveBox(from, to);
+        return evaluator.moveBox(to, from);
+    }
+
+    @Benchmark
+    public int fullSolve() {
+        evaluator.reset(pushed);
+        return evaluator.reset(initial);
+    }
+
+    @Benchmark
+    public int matchingHeuristic() {
+        matching.estimate(pushed);
+        return matching.estimate(initial);
+    }
+
+    @Benchmark
+    public int nearestGoalHeuristic() {
+        nearest.estimate(pushed);
+        return nearest.estimate(initial);
+    }
+}
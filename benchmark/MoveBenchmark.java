@@ -0,0 +1,88 @@
+package sokoban.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sokoban.entity.PlayerEntity;
+import sokoban.game.Game;
+import sokoban.game.Point;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Game#attemptMoveEntity(sokoban.entity.Entity, Point)}.
+ *
+ * Every benchmark leaves the game in the state it found it in, so the
+ * measured work does not drift over the iterations: plain steps walk right
+ * and back, pushes and collisions are reverted with {@link Game#undo()}.
+ * The undo is part of the measurement.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveBenchmark {
+    /** Edge length of the (square) board. */
+    @Param({"16", "64", "256"})
+    int size;
+
+    /** Number of boxes on the board besides the lane; capped by what fits on the board. */
+    @Param({"1", "16", "128"})
+    int boxes;
+
+    /** Number of consecutive pushes in {@link MoveBenchmark#chainedPushes()}. */
+    @Param({"8"})
+    int chain;
+
+    private Game stepGame, pushGame, explosiveGame;
+    private PlayerEntity stepPlayer, pushPlayer, explosivePlayer;
+
+    @Setup
+    public void setUp() {
+        int boxes = Math.min(this.boxes, Levels.fittingBoxes(size, size));
+        stepGame = Levels.parse(Levels.generate(size, size, boxes, "P "));
+        pushGame = Levels.parse(Levels.generate(size, size, boxes, "PB" + " ".repeat(chain)));
+        explosiveGame = Levels.parse(Levels.generate(size, size, boxes, "POX"));
+        stepPlayer = stepGame.getPlayer();
+        pushPlayer = pushGame.getPlayer();
+        explosivePlayer = explosiveGame.getPlayer();
+    }
+
+    @Benchmark
+    public void step() {
+        stepGame.attemptMoveEntity(stepPlayer, Point.RIGHT);
+        stepGame.attemptMoveEntity(stepPlayer, Point.LEFT);
+    }
+
+    @Benchmark
+    public void push() {
+        pushGame.attemptMoveEntity(pushPlayer, Point.RIGHT);
+        pushGame.undo();
+    }
+
+    @Benchmark
+    public void chainedPushes() {
+        for (int i = 0; i < chain; i++) {
+            pushGame.attemptMoveEntity(pushPlayer, Point.RIGHT);
+        }
+        for (int i = 0; i < chain; i++) {
+            pushGame.undo();
+        }
+    }
+
+    @Benchmark
+    public void explosiveCollision() {
+        explosiveGame.attemptMoveEntity(explosivePlayer, Point.RIGHT);
+        explosiveGame.undo();
+    }
+}
@@ -0,0 +1,49 @@
+package sokoban.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sokoban.game.Game;
+import sokoban.parser.PlaintextParser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link PlaintextParser#makeGameFromText(String)} on levels from
+ * a few cells up to a million cells.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+    /** Edge length of the (square) board. */
+    @Param({"8", "64", "1024"})
+    int size;
+
+    /** Number of boxes; capped by what fits on the board. */
+    @Param({"1", "1000"})
+    int boxes;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = Levels.generate(size, size, Math.min(boxes, Levels.fittingBoxes(size, size)), "P");
+    }
+
+    @Benchmark
+    public Game parse() {
+        return Levels.parse(text);
+    }
+}
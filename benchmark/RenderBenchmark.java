@@ -0,0 +1,61 @@
+package sokoban.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sokoban.game.Game;
+import sokoban.io.output.PlaintextRenderer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link PlaintextRenderer#render(Game)} and {@link Game#isOver()}.
+ *
+ * The renderer prints to a stream discarding everything, so only building
+ * and encoding the frame is measured.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderBenchmark {
+    /** Edge length of the (square) board. */
+    @Param({"16", "64", "256"})
+    int size;
+
+    /** Number of boxes on the board; capped by what fits on the board. */
+    @Param({"1", "16", "128"})
+    int boxes;
+
+    private Game game;
+    private PlaintextRenderer renderer;
+
+    @Setup
+    public void setUp() {
+        int boxes = Math.min(this.boxes, Levels.fittingBoxes(size, size));
+        renderer = new PlaintextRenderer(new PrintStream(OutputStream.nullOutputStream()));
+        game = Levels.parse(Levels.generate(size, size, boxes, "P"), renderer);
+    }
+
+    @Benchmark
+    public void render() {
+        renderer.render(game);
+    }
+
+    @Benchmark
+    public boolean isOver() {
+        return game.isOver();
+    }
+}
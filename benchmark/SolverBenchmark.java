@@ -0,0 +1,92 @@
+package sokoban.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sokoban.solver.MatchingHeuristic;
+import sokoban.solver.NearestGoalHeuristic;
+import sokoban.solver.ParallelSolver;
+import sokoban.solver.Solution;
+import sokoban.solver.SolverLevel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks how the {@link ParallelSolver} scales with the number of
+ * workers, reported as expanded nodes per second ({@code nodes}).
+ *
+ * The level takes far more nodes to solve than the node limit, so every
+ * search expands the same nodes and ends at the limit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolverBenchmark {
+    private static final String LEVEL = "19 11\n"
+            + "    #####\n"
+            + "    #   #\n"
+            + "    #B  #\n"
+            + "  ###  B##\n"
+            + "  #  B B #\n"
+            + "### # ## #   ######\n"
+            + "#   # ## #####  GG#\n"
+            + "# B  B          GG#\n"
+            + "##### ### #P##  GG#\n"
+            + "    #     #########\n"
+            + "    #######\n";
+
+    /** Number of workers of the solver. */
+    @Param({"1", "2", "4", "8"})
+    int parallelism;
+
+    @Param({"nearest", "matching"})
+    String heuristic;
+
+    @Param({"100000"})
+    long nodeLimit;
+
+    private SolverLevel level;
+    private ParallelSolver solver;
+
+    /**
+     * Expanded nodes, reported per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setUp() {
+        level = new SolverLevel(Levels.parse(LEVEL));
+        solver = new ParallelSolver(parallelism);
+        solver.setNodeLimit(nodeLimit);
+        solver.setHeuristicFactory(heuristic.equals("matching") ? MatchingHeuristic::new : NearestGoalHeuristic::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        solver.close();
+    }
+
+    @Benchmark
+    public Solution solve(Nodes nodes) {
+        Solution solution = solver.solve(level);
+        nodes.nodes += solution.getExpandedNodes();
+        return solution;
+    }
+}
@@ -10,6 +10,11 @@ import sokoban.game.Point;
  * order to win the game.
  */
 public class BoxEntity extends AbstractEntity {
+    @Override
+    public int getCollisionType() {
+        return CollisionRules.BOX;
+    }
+
     @Override
     public void accept(EntityVisitor entityVisitor) {
         entityVisitor.visitBoxEntity(this);
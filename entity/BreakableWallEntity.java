@@ -8,6 +8,11 @@ import sokoban.game.Point;
  * when colliding with an {@link ExplosiveEntity}.
  */
 public class BreakableWallEntity extends AbstractEntity {
+    @Override
+    public int getCollisionType() {
+        return CollisionRules.BREAKABLE_WALL;
+    }
+
     @Override
     public void accept(EntityVisitor entityVisitor) {
         entityVisitor.visitBreakableWallEntity(this);
@@ -0,0 +1,223 @@
+package sokoban.entity;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table of the outcomes of collisions between entity types.
+ *
+ * Every entity has a collision type (see {@link Entity#getCollisionType()});
+ * the outcome of an entity (the mover) running into another one (the
+ * target) is looked up in a precomputed table indexed by both types, so
+ * the game can resolve whole push chains in a loop instead of going through
+ * {@link CollisionVisitor}. Entities of type {@link CollisionRules#CUSTOM}
+ * keep using the visitor.
+ *
+ * The {@link CollisionRules#standard() standard rules} define the built-in
+ * types. Further types can be defined with a {@link Builder} or read from
+ * text (see {@link CollisionRules#parse(Reader)}); entities of such types
+ * are {@link GenericEntity} instances. Levels using them are read by a
+ * {@link sokoban.parser.PlaintextParser} created with the rules.
+ */
+public final class CollisionRules {
+    /**
+     * Result of a collision.
+     */
+    public enum Outcome {
+        /** Nothing happens, the mover stays where it is. */
+        BLOCK,
+        /** The target is moved in the same direction first. */
+        PUSH,
+        /** The target is removed and the mover takes its place. */
+        DESTROY_TARGET,
+        /** The mover is removed. */
+        DESTROY_MOVER,
+        /** Both are removed. */
+        DESTROY_BOTH
+    }
+
+    /** Type of entities whose collisions are handled by {@link CollisionVisitor}. */
+    public static final int CUSTOM = -1;
+
+    public static final int PLAYER = 0;
+    public static final int BOX = 1;
+    public static final int EXPLOSIVE = 2;
+    public static final int BREAKABLE_WALL = 3;
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    private static final CollisionRules STANDARD = new Builder().build();
+
+    private final String[] names;
+    private final char[] symbols;
+    private final byte[] table;
+
+    private CollisionRules(Builder builder) {
+        this.names = builder.names.toArray(new String[0]);
+        this.symbols = new char[names.length];
+        for (int i = 0; i < names.length; i++) {
+            symbols[i] = builder.symbols.get(i);
+        }
+        this.table = new byte[names.length * names.length];
+        for (int[] rule : builder.rules) {
+            table[rule[0] * names.length + rule[1]] = (byte) rule[2];
+        }
+    }
+
+    /**
+     * Return the rules of the built-in entity types: the player pushes boxes
+     * and explosives, and an explosive running into a breakable wall
+     * destroys both. Everything else blocks.
+     */
+    public static CollisionRules standard() {
+        return STANDARD;
+    }
+
+    /**
+     * Return the outcome of an entity of type mover running into one of
+     * type target. Both types must be defined, i.e. not {@link CollisionRules#CUSTOM}.
+     */
+    public Outcome outcome(int mover, int target) {
+        return OUTCOMES[table[mover * names.length + target]];
+    }
+
+    public int getTypeCount() {
+        return names.length;
+    }
+
+    public String getTypeName(int type) {
+        return names[type];
+    }
+
+    /**
+     * Return the character representing the given type in level files and
+     * renderings.
+     */
+    public char getSymbol(int type) {
+        return symbols[type];
+    }
+
+    /**
+     * Return the type with the given name, or {@link CollisionRules#CUSTOM}
+     * if there is none.
+     */
+    public int typeOf(String name) {
+        return Arrays.asList(names).indexOf(name);
+    }
+
+    /**
+     * Read rules extending the standard rules. Every non-empty line that
+     * does not start with '#' is one of
+     * <pre>
+     *     type NAME SYMBOL
+     *     rule MOVER TARGET OUTCOME
+     * </pre>
+     * where MOVER and TARGET are type names (the built-in types are called
+     * player, box, explosive and breakable-wall) and OUTCOME is the name of
+     * an {@link Outcome}. Rules must not destroy the player or boxes.
+     * @throws IOException if reading fails or a line is invalid
+     */
+    public static CollisionRules parse(Reader reader) throws IOException {
+        Builder builder = new Builder();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] words = line.split("\\s+");
+            try {
+                if (words[0].equals("type") && words.length == 3 && words[2].length() == 1) {
+                    builder.defineType(words[1], words[2].charAt(0));
+                } else if (words[0].equals("rule") && words.length == 4) {
+                    builder.setRule(words[1], words[2], Outcome.valueOf(words[3]));
+                } else {
+                    throw new IOException("invalid rule: " + line);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("invalid rule: " + line, e);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Helper class for creating {@link CollisionRules}, starting with the
+     * standard rules.
+     */
+    public static class Builder {
+        private final List<String> names = new ArrayList<>();
+        private final List<Character> symbols = new ArrayList<>();
+        private final List<int[]> rules = new ArrayList<>();
+
+        public Builder() {
+            defineType("player", 'P');
+            defineType("box", 'B');
+            defineType("explosive", 'O');
+            defineType("breakable-wall", 'X');
+            setRule(PLAYER, BOX, Outcome.PUSH);
+            setRule(PLAYER, EXPLOSIVE, Outcome.PUSH);
+            setRule(EXPLOSIVE, BREAKABLE_WALL, Outcome.DESTROY_BOTH);
+        }
+
+        /**
+         * Define a new entity type; all its collisions block until rules are set.
+         * @return the type
+         * @throws IllegalArgumentException if the name is already defined
+         */
+        public int defineType(String name, char symbol) {
+            assert name != null;
+            if (names.contains(name)) {
+                throw new IllegalArgumentException("type already defined: " + name);
+            }
+            names.add(name);
+            symbols.add(symbol);
+            return names.size() - 1;
+        }
+
+        /**
+         * Set the outcome of an entity of type mover running into one of type target.
+         * @throws IllegalArgumentException if the outcome destroys the player or a box
+         */
+        public void setRule(int mover, int target, Outcome outcome) {
+            assert mover >= 0 && mover < names.size() && target >= 0 && target < names.size();
+            assert outcome != null;
+            boolean destroysMover = outcome == Outcome.DESTROY_MOVER || outcome == Outcome.DESTROY_BOTH;
+            boolean destroysTarget = outcome == Outcome.DESTROY_TARGET || outcome == Outcome.DESTROY_BOTH;
+            if (destroysMover && isProtected(mover) || destroysTarget && isProtected(target)) {
+                throw new IllegalArgumentException("players and boxes cannot be destroyed: "
+                        + names.get(mover) + " " + names.get(target) + " " + outcome);
+            }
+            rules.add(new int[]{mover, target, outcome.ordinal()});
+        }
+
+        /**
+         * Set a rule for the types with the given names.
+         * @throws IllegalArgumentException if a type is not defined or the
+         * outcome destroys the player or a box
+         */
+        public void setRule(String mover, String target, Outcome outcome) {
+            setRule(typeOf(mover), typeOf(target), outcome);
+        }
+
+        public CollisionRules build() {
+            return new CollisionRules(this);
+        }
+
+        private static boolean isProtected(int type) {
+            return type == PLAYER || type == BOX;
+        }
+
+        private int typeOf(String name) {
+            int type = names.indexOf(name);
+            if (type < 0) {
+                throw new IllegalArgumentException("unknown type: " + name);
+            }
+            return type;
+        }
+    }
+}
@@ -13,6 +13,15 @@ import sokoban.game.Point;
 public abstract class Entity implements CollisionVisitor {
     public abstract void accept(EntityVisitor entityVisitor);
 
+    /**
+     * Return the type of this entity in the {@link CollisionRules} of the
+     * game, or {@link CollisionRules#CUSTOM} if its collisions are handled
+     * by the {@link CollisionVisitor} methods.
+     */
+    public int getCollisionType() {
+        return CollisionRules.CUSTOM;
+    }
+
     protected Game game;
     public void setGame(Game game) {
         this.game = game;
@@ -10,4 +10,5 @@ public interface EntityVisitor {
     void visitPlayerEntity(PlayerEntity playerEntity);
     void visitExplosiveEntity(ExplosiveEntity explosiveEntity);
     void visitBreakableWallEntity(BreakableWallEntity breakableWallEntity);
+    void visitGenericEntity(GenericEntity genericEntity);
 }
@@ -15,6 +15,11 @@ public class ExplosiveEntity extends AbstractEntity {
         this.game = game;
     }
 
+    @Override
+    public int getCollisionType() {
+        return CollisionRules.EXPLOSIVE;
+    }
+
     @Override
     public void accept(EntityVisitor entityVisitor) {
         entityVisitor.visitExplosiveEntity(this);
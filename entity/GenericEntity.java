@@ -0,0 +1,41 @@
+package sokoban.entity;
+
+/**
+ * Entity of a type defined by {@link CollisionRules} rather than by a
+ * class. Its collisions are entirely described by the rules of its type.
+ */
+public class GenericEntity extends AbstractEntity {
+    private final int type;
+    private final char symbol;
+
+    /**
+     * Create an entity of the given type of the given rules.
+     */
+    public GenericEntity(CollisionRules rules, int type) {
+        assert type >= 0 && type < rules.getTypeCount();
+        this.type = type;
+        this.symbol = rules.getSymbol(type);
+    }
+
+    @Override
+    public int getCollisionType() {
+        return type;
+    }
+
+    /**
+     * Return the character representing this entity.
+     */
+    public char getSymbol() {
+        return symbol;
+    }
+
+    @Override
+    public void accept(EntityVisitor entityVisitor) {
+        entityVisitor.visitGenericEntity(this);
+    }
+
+    @Override
+    public String toString() {
+        return "aGenericEntity(" + symbol + ")";
+    }
+}
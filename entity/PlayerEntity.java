@@ -22,19 +22,40 @@ public class PlayerEntity extends AbstractEntity {
     }
 
     public void moveRight() {
-        moveBy(new Point(1, 0));
+        moveBy(Point.RIGHT);
     }
 
     public void moveDown() {
-        moveBy(new Point(0, 1));
+        moveBy(Point.DOWN);
     }
 
     public void moveLeft() {
-        moveBy(new Point(-1, 0));
+        moveBy(Point.LEFT);
     }
 
     public void moveUp() {
-        moveBy(new Point(0, -1));
+        moveBy(Point.UP);
+    }
+
+    /**
+     * Walk to the given position without pushing, see {@link Game#movePlayerTo(Point)}.
+     * @return whether the position could be reached
+     */
+    public boolean moveTo(Point point) {
+        return game.movePlayerTo(point) >= 0;
+    }
+
+    public void undo() {
+        game.undo();
+    }
+
+    public void redo() {
+        game.redo();
+    }
+
+    @Override
+    public int getCollisionType() {
+        return CollisionRules.PLAYER;
     }
 
     @Override
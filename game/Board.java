@@ -0,0 +1,226 @@
+package sokoban.game;
+
+import sokoban.entity.Entity;
+import sokoban.tile.FloorTile;
+import sokoban.tile.GoalTile;
+import sokoban.tile.Tile;
+import sokoban.tile.WallTile;
+
+/**
+ * Packed storage of the cells of a {@link Game}.
+ *
+ * The static cell type of every position is kept in a byte array and the
+ * entity occupying a position in a parallel array, both indexed by
+ * {@link Board#index(int, int)}. Tiles are not stored as objects;
+ * {@link Board#tileAt(Point)} returns a view on the stored cell type.
+ *
+ * Boards of games started from a {@link LevelTemplate} share the cell types
+ * of the template; they are copied before the first change.
+ */
+public class Board {
+    public static final byte FLOOR = 0;
+    public static final byte WALL = 1;
+    public static final byte GOAL = 2;
+
+    private final int width, height;
+    private byte[] cells;
+    private boolean sharedCells;
+    private final Entity[] occupants;
+    private final Point[] points;
+    private int goalCount;
+    private long layoutHash;
+    private boolean layoutHashed;
+
+    /**
+     * Create a board of the given size with floor on every cell.
+     */
+    Board(int width, int height) {
+        assert width >= 0 && height >= 0;
+        this.width = width;
+        this.height = height;
+        this.cells = new byte[width * height];
+        this.occupants = new Entity[width * height];
+        this.points = new Point[width * height];
+    }
+
+    /**
+     * Create an empty board sharing the cell types and points of the given
+     * layout, which must not be changed afterwards.
+     */
+    Board(Board layout) {
+        this.width = layout.width;
+        this.height = layout.height;
+        this.cells = layout.cells;
+        this.sharedCells = true;
+        this.occupants = new Entity[cells.length];
+        this.points = layout.points;
+        this.goalCount = layout.goalCount;
+        this.layoutHash = layout.layoutHash;
+        this.layoutHashed = layout.layoutHashed;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Return the number of cells on the board.
+     */
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * Return the index of the cell at the given (1-based) coordinates.
+     */
+    public int index(int x, int y) {
+        assert x >= 1 && x <= width && y >= 1 && y <= height;
+        return (y - 1) * width + (x - 1);
+    }
+
+    /**
+     * Return the index of the cell at the given point, which must be valid.
+     */
+    public int index(Point point) {
+        return index(point.getX(), point.getY());
+    }
+
+    /**
+     * Return the position of the cell with the given index. Points are
+     * created on first use and shared afterwards, so moving entities does
+     * not allocate.
+     */
+    public Point pointOf(int index) {
+        Point point = points[index];
+        if (point == null) {
+            point = new Point(xOf(index), yOf(index));
+            points[index] = point;
+        }
+        return point;
+    }
+
+    public int xOf(int index) {
+        return index % width + 1;
+    }
+
+    public int yOf(int index) {
+        return index / width + 1;
+    }
+
+    public byte cellAt(int index) {
+        return cells[index];
+    }
+
+    public boolean isWall(int index) {
+        return cells[index] == WALL;
+    }
+
+    public boolean isGoal(int index) {
+        return cells[index] == GOAL;
+    }
+
+    /**
+     * Return the number of goal cells on the board.
+     */
+    public int getGoalCount() {
+        return goalCount;
+    }
+
+    /**
+     * Return a hash of the size and the cell types of the board, i.e. of
+     * everything but the entities. It is computed on first use.
+     */
+    public long layoutHash() {
+        if (!layoutHashed) {
+            // FNV-1a over the size and the cell types
+            long hash = 0xcbf29ce484222325L;
+            hash = (hash ^ width) * 0x100000001b3L;
+            hash = (hash ^ height) * 0x100000001b3L;
+            for (byte cell : cells) {
+                hash = (hash ^ cell) * 0x100000001b3L;
+            }
+            layoutHash = hash;
+            layoutHashed = true;
+        }
+        return layoutHash;
+    }
+
+    /**
+     * Return whether an entity may be placed on the given cell.
+     */
+    public boolean canBeOccupied(int index) {
+        return cells[index] != WALL;
+    }
+
+    public boolean hasEntityAt(int index) {
+        return occupants[index] != null;
+    }
+
+    /**
+     * Return the entity at the given cell or null if there is none.
+     */
+    public Entity entityAt(int index) {
+        return occupants[index];
+    }
+
+    /**
+     * Return a tile view on the cell at the given point. The view reflects
+     * the entity currently standing on the cell, but is not updated when
+     * the board changes.
+     */
+    public Tile tileAt(Point point) {
+        int index = index(point);
+        Tile tile;
+        switch (cells[index]) {
+            case WALL:
+                tile = new WallTile(point);
+                break;
+            case GOAL:
+                tile = new GoalTile(point);
+                break;
+            default:
+                tile = new FloorTile(point);
+        }
+        if (occupants[index] != null) {
+            tile.enter(occupants[index]);
+        }
+        return tile;
+    }
+
+    /**
+     * Set the cell type at the given index to the type of the given tile.
+     */
+    void setTile(int index, Tile tile) {
+        assert tile != null;
+        setCell(index, cellTypeOf(tile));
+    }
+
+    void setCell(int index, byte cell) {
+        if (sharedCells) {
+            cells = cells.clone();
+            sharedCells = false;
+        }
+        layoutHashed = false;
+        if (cells[index] == GOAL) goalCount--;
+        cells[index] = cell;
+        if (cell == GOAL) goalCount++;
+    }
+
+    void setEntity(int index, Entity entity) {
+        occupants[index] = entity;
+    }
+
+    /**
+     * Map a tile object onto the cell type stored for it.
+     */
+    private static byte cellTypeOf(Tile tile) {
+        if (!tile.canBeOccupied()) {
+            return WALL;
+        }
+        return tile.isGoalTile() ? GOAL : FLOOR;
+    }
+}
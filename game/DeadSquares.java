@@ -0,0 +1,65 @@
+package sokoban.game;
+
+import java.util.BitSet;
+
+/**
+ * Computes the dead squares of a level, i.e. the cells from which a box can
+ * never be pushed onto any goal, no matter where the other entities are.
+ *
+ * The analysis starts at every goal and "pulls" a box backwards: a box on
+ * cell c can have been pushed there from the neighbour n of c if the player
+ * could stand on the cell behind n. Every cell reached this way is alive;
+ * all other cells are dead. Only the static layout is considered, so
+ * entities (including breakable walls) are treated as removable.
+ */
+public final class DeadSquares {
+    private DeadSquares() {}
+
+    /**
+     * Compute the dead squares of the given board.
+     * @return bitmap indexed by {@link Board} index, set for dead cells
+     */
+    public static BitSet compute(Board board) {
+        int width = board.getWidth(), height = board.getHeight();
+        int size = board.size();
+        boolean[] alive = new boolean[size];
+        int[] queue = new int[size];
+        int head = 0, tail = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (board.isGoal(i)) {
+                alive[i] = true;
+                queue[tail++] = i;
+            }
+        }
+
+        int[] dx = {0, 0, -1, 1};
+        int[] dy = {-1, 1, 0, 0};
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = board.xOf(cell), y = board.yOf(cell);
+            for (int d = 0; d < dx.length; d++) {
+                // box comes from (x+dx, y+dy), the player stands behind it
+                int bx = x + dx[d], by = y + dy[d];
+                int px = bx + dx[d], py = by + dy[d];
+                if (px < 1 || px > width || py < 1 || py > height) {
+                    continue;
+                }
+                int from = board.index(bx, by);
+                if (alive[from] || board.isWall(from) || board.isWall(board.index(px, py))) {
+                    continue;
+                }
+                alive[from] = true;
+                queue[tail++] = from;
+            }
+        }
+
+        BitSet dead = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (!alive[i] && !board.isWall(i)) {
+                dead.set(i);
+            }
+        }
+        return dead;
+    }
+}
@@ -1,13 +1,17 @@
 package sokoban.game;
 
 import sokoban.entity.BoxEntity;
+import sokoban.entity.CollisionRules;
 import sokoban.entity.Entity;
 import sokoban.entity.PlayerEntity;
 import sokoban.io.input.InputHandler;
 import sokoban.io.input.StdinInputHandler;
+import sokoban.io.output.AsyncRenderer;
 import sokoban.io.output.PlaintextRenderer;
 import sokoban.io.output.Renderer;
 import sokoban.parser.PlaintextParser;
+import sokoban.solver.DeadlockDetector;
+import sokoban.solver.SolverLevel;
 import sokoban.tile.FloorTile;
 import sokoban.tile.GoalTile;
 import sokoban.tile.Tile;
@@ -30,16 +34,51 @@ import java.util.*;
  * A game is responsible for maintaining the tiles and entities in a game. An
  * entity can request movement through the {@link
  * Game#attemptMoveEntity(Entity, Point)} method.
+ *
+ * Tiles and entities are kept in a packed {@link Board}; {@link
+ * Game#tileAt(Point)} returns a view on the stored cell type.
+ *
+ * Methods changing the board synchronize on the game, so a renderer running
+ * on another thread (see {@link AsyncRenderer}) can read a consistent state
+ * by synchronizing on the game as well.
  */
 public class Game {
     private final int width, height;
-    private final Tile[][] tiles;
-    private final Map<Point, Entity> entities;
+    private final Board board;
+    private final Map<Entity, Point> positions;
+    private final BitSet deadSquares;
+    /** Number of the most recent cell changes that can be looked up with {@link Game#changedCell(long)}. */
+    public static final int CHANGE_LOG_SIZE = 64;
+
     private final Renderer renderer;
     private final InputHandler inputHandler;
     private PlayerEntity activePlayer;
-    private Set<GoalTile> goalTiles;
     private Set<BoxEntity> boxes;
+    private int boxesOnGoal;
+    private long zobristHash;
+    private final History history;
+    private int moveDepth;
+    private int lastPushedBox = -1;
+    private final boolean deadlockWarning;
+    private DeadlockDetector deadlockDetector;
+    private DeadlockDetector.Position deadlockPosition;
+    // result of isDeadlocked for the last pushed box and layout version below
+    private boolean deadlocked;
+    private int deadlockBox = -1;
+    private long deadlockVersion = -1;
+    private final CollisionRules collisionRules;
+    // chains of pushed entities, see resolveMove
+    private Entity[] chainEntities = new Entity[8];
+    private int[] chainCells = new int[8];
+    private int chainSize;
+    // changes whenever an entity other than the player enters or leaves a cell
+    private long layoutVersion;
+    private PlayerPaths playerPaths;
+    private int moveCount;
+    private int stepChanges; // entities moved or removed by the current move
+    // ring of the cells whose entity changed last, see changedCell
+    private final int[] changedCells = new int[CHANGE_LOG_SIZE];
+    private long changeCount;
 
 
     /**
@@ -52,19 +91,33 @@ public class Game {
 
         this.width = builder.width;
         this.height = builder.height;
-        this.tiles = builder.tiles;
-        this.entities = builder.entities;
-        this.renderer = builder.renderer;
-        this.goalTiles = builder.goalTiles;
+        this.board = builder.board;
+        this.positions = builder.positions;
+        this.renderer = builder.maxFrameRate > 0
+                ? new AsyncRenderer(builder.renderer, builder.maxFrameRate)
+                : builder.renderer;
         this.boxes = builder.boxes;
         this.inputHandler = builder.inputHandler;
+        this.history = new History(builder.historyLimit);
+        this.collisionRules = builder.collisionRules;
+        this.deadlockWarning = builder.deadlockWarning;
+        this.deadSquares = builder.deadSquares != null
+                ? builder.deadSquares
+                : DeadSquares.compute(board);
+
+        for (Map.Entry<Entity, Point> entry : positions.entrySet()) {
+            entry.getKey().setGame(this);
+            zobristHash ^= Zobrist.key(board.index(entry.getValue()), entry.getKey());
+        }
 
-        if (builder.playerPosition != null) {
-            setPlayerTo(builder.playerPosition);
+        for (BoxEntity box : boxes) {
+            if (board.isGoal(board.index(positions.get(box)))) {
+                boxesOnGoal++;
+            }
         }
 
-        for (Entity e : entities.values()) {
-            e.setGame(this);
+        if (builder.playerPosition != null) {
+            setPlayerTo(builder.playerPosition);
         }
 
         assert invariant();
@@ -82,8 +135,8 @@ public class Game {
     private boolean isValidGame() {
         return
                 activePlayer != null
-                && goalTiles.size() > 0
-                && boxes.size() <= goalTiles.size();
+                && board.getGoalCount() > 0
+                && boxes.size() <= board.getGoalCount();
     }
 
     /**
@@ -133,7 +186,7 @@ public class Game {
         assert point != null;
         assertValidPosition(point);
 
-        return tiles[point.getX()][point.getY()];
+        return board.tileAt(point);
     }
 
     public int getWidth() {
@@ -152,7 +205,7 @@ public class Game {
         assert point != null;
         assertValidPosition(point);
 
-        return entities.containsKey(point);
+        return board.hasEntityAt(board.index(point));
     }
 
 
@@ -164,40 +217,78 @@ public class Game {
     public Entity entityAt(Point point) {
         assert point != null;
         assertValidPosition(point);
-        assert entities.containsKey(point);
+        assert hasEntityAt(point);
 
-        return entities.get(point);
+        return board.entityAt(board.index(point));
     }
 
     /**
-     * Move the entity by the given vector.
-     *
-     * After execution, the entity will be position at the new destination.
-     *
-     * @param entity entity to move, must not be null and be on the board
-     * @param delta vector by which the entity is moved, must not be null
+     * Return whether the given position is a dead square, i.e. a box on it
+     * can never reach a goal tile (see {@link DeadSquares}).
+     * @param point must be a valid position
      */
-    private void moveEntity(Entity entity, Point delta) {
-        assert entity != null;
-        assert entities.containsValue(entity);
-        assert delta != null;
+    public boolean isDeadSquare(Point point) {
+        assertValidPosition(point);
+        return deadSquares.get(board.index(point));
+    }
 
-        Point oldPosition = positionOf(entity);
-        Point destination = oldPosition.add(delta);
+    /**
+     * Return whether the cell with the given {@link Board} index is a dead square.
+     */
+    public boolean isDeadSquare(int index) {
+        return deadSquares.get(index);
+    }
 
-        tileAt(oldPosition).leave(entity);
-        tileAt(destination).enter(entity);
+    /**
+     * Return the rules used to resolve collisions between entities.
+     */
+    public CollisionRules getCollisionRules() {
+        return collisionRules;
+    }
 
-        entities.remove(oldPosition);
-        entities.put(destination, entity);
+    /**
+     * Return the packed board backing this game.
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Move the entity between the cells with the given indices and record
+     * the move.
+     *
+     * After execution, the entity will be position at the new destination.
+     *
+     * @param entity entity to move, must not be null and be on the cell from
+     * @param to index of a free cell that can be occupied
+     */
+    private void moveEntity(Entity entity, int from, int to) {
+        assert entity != null && board.entityAt(from) == entity;
+
+        leaveCell(from, entity);
+        enterCell(to, entity);
+        positions.put(entity, board.pointOf(to));
+        history.recordMove(entity, from, to);
+        stepChanges++;
+        if (entity instanceof BoxEntity) {
+            lastPushedBox = to;
+        }
 
         // Postconditions
-        assert !hasEntityAt(oldPosition);
-        assert hasEntityAt(destination);
+        assert !board.hasEntityAt(from);
+        assert board.hasEntityAt(to);
 
         assert invariant();
     }
 
+    /**
+     * Return the index of the cell reached from the cell with the given
+     * index by moving by the given delta, which must stay on the board.
+     */
+    private int destinationOf(int from, Point delta) {
+        return board.index(board.xOf(from) + delta.getX(), board.yOf(from) + delta.getY());
+    }
+
     /**
      * Try to move the given entity by the vector delta. This method uses
      * the collision mechanism to execute the actual movements. Depending
@@ -210,29 +301,285 @@ public class Game {
      * method) and when returning to the initial call, the space in front
      * of the player is now empty, allowing him to move there.
      *
+     * All changes caused by the outermost call are recorded as a single step
+     * that can be undone with {@link Game#undo()}.
+     *
      * @param entity entity that should be moved, must not be null and on board
      * @param delta distance by which the entity should be moved, must not be null
      */
-    public void attemptMoveEntity(Entity entity, Point delta) {
+    public synchronized void attemptMoveEntity(Entity entity, Point delta) {
         assert entity != null && delta != null;
-        assert entities.containsValue(entity);
+        assert positions.containsKey(entity);
+
+        if (moveDepth++ == 0) {
+            beginMove();
+        }
+        try {
+            resolveMove(entity, delta);
+        } finally {
+            if (--moveDepth == 0) {
+                commitMove();
+            }
+        }
+
+        assert invariant();
+    }
+
+    private void beginMove() {
+        history.begin();
+        stepChanges = 0;
+    }
+
+    /**
+     * Finish the outermost move; it is counted if anything has changed.
+     */
+    private void commitMove() {
+        history.commit();
+        if (stepChanges > 0) {
+            moveCount++;
+        }
+    }
+
+    /**
+     * Return the number of moves that changed the board, not counting
+     * moves that have been undone. A walk by {@link Game#movePlayerTo(Point)}
+     * counts as one move.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Collide the given entity with the entity at its destination (if any)
+     * and move it when the destination is free afterwards.
+     *
+     * Collisions are looked up in the {@link CollisionRules} of the game:
+     * as long as the outcome is a push, the pushed entity is added to a
+     * chain and collides with the entity in front of it. Afterwards the
+     * entities of the chain are moved starting at the front. Collisions
+     * involving entities of type {@link CollisionRules#CUSTOM} are handed
+     * to {@link Entity#collideWith(Entity, Point)} instead.
+     */
+    private void resolveMove(Entity entity, Point delta) {
+        int base = chainSize;
+        try {
+            appendToChain(entity, board.index(positionOf(entity)));
+
+            // Follow the entities in front of the mover as long as they are pushed.
+            while (true) {
+                Entity mover = chainEntities[chainSize - 1];
+                int destination = destinationOf(chainCells[chainSize - 1], delta);
+                Entity target = board.entityAt(destination);
+                if (target == null) {
+                    break;
+                }
+
+                int moverType = mover.getCollisionType();
+                int targetType = target.getCollisionType();
+                if (moverType == CollisionRules.CUSTOM || targetType == CollisionRules.CUSTOM) {
+                    target.collideWith(mover, delta);
+                    break;
+                }
+                CollisionRules.Outcome outcome = collisionRules.outcome(moverType, targetType);
+                if (outcome == CollisionRules.Outcome.PUSH) {
+                    appendToChain(target, destination);
+                    continue;
+                }
+                // the rules never destroy the player or boxes, so the game stays valid
+                if (outcome == CollisionRules.Outcome.DESTROY_TARGET || outcome == CollisionRules.Outcome.DESTROY_BOTH) {
+                    removeEntity(target);
+                }
+                if (outcome == CollisionRules.Outcome.DESTROY_MOVER || outcome == CollisionRules.Outcome.DESTROY_BOTH) {
+                    removeEntity(mover);
+                }
+                break;
+            }
+
+            // Move the chain from the front while the destinations are free.
+            for (int i = chainSize - 1; i >= base; i--) {
+                int from = chainCells[i];
+                if (board.entityAt(from) != chainEntities[i]) {
+                    continue; // destroyed
+                }
+                int destination = destinationOf(from, delta);
+                if (board.hasEntityAt(destination) || !board.canBeOccupied(destination)) {
+                    break;
+                }
+                moveEntity(chainEntities[i], from, destination);
+            }
+        } finally {
+            Arrays.fill(chainEntities, base, chainSize, null);
+            chainSize = base;
+        }
+    }
+
+    private void appendToChain(Entity entity, int cell) {
+        if (chainSize == chainEntities.length) {
+            chainEntities = Arrays.copyOf(chainEntities, chainSize * 2);
+            chainCells = Arrays.copyOf(chainCells, chainSize * 2);
+        }
+        chainEntities[chainSize] = entity;
+        chainCells[chainSize] = cell;
+        chainSize++;
+    }
+
+    /**
+     * Return whether the player can walk to the given position without
+     * pushing anything.
+     * @param point must be a valid position
+     */
+    public synchronized boolean isReachable(Point point) {
+        assertValidPosition(point);
+        return paths().isReachable(board.index(positionOf(activePlayer)), board.index(point), layoutVersion);
+    }
+
+    /**
+     * Return the positions the player passes on the shortest walk to the
+     * given position that does not push anything, ending with the given
+     * position, or null if there is no such walk.
+     * @param point must be a valid position
+     */
+    public synchronized List<Point> getPathTo(Point point) {
+        assertValidPosition(point);
+        int from = board.index(positionOf(activePlayer));
+        int steps = paths().distance(from, board.index(point), layoutVersion);
+        if (steps < 0) {
+            return null;
+        }
+        List<Point> path = new ArrayList<>(steps);
+        for (int cell = from; path.size() < steps; ) {
+            cell = playerPaths.nextStep(cell);
+            path.add(board.pointOf(cell));
+        }
+        return path;
+    }
+
+    /**
+     * Walk the player on the shortest path to the given position without
+     * pushing anything. The walk is executed as a single move, i.e. it is
+     * rendered once and undone with one call of {@link Game#undo()}.
+     *
+     * The reachable region and the distances to the last target are cached
+     * (see {@link PlayerPaths}) and only recomputed after an entity other
+     * than the player has moved, so repeated walks do not search the board.
+     *
+     * @param point must be a valid position
+     * @return the number of steps walked, or -1 if the position cannot be reached
+     */
+    public synchronized int movePlayerTo(Point point) {
+        assertValidPosition(point);
+        int from = board.index(positionOf(activePlayer));
+        int to = board.index(point);
+        int steps = paths().distance(from, to, layoutVersion);
+        if (steps <= 0) {
+            return steps;
+        }
+
+        // The cells in between are free, so only the end points are recorded.
+        if (moveDepth++ == 0) {
+            beginMove();
+        }
+        try {
+            moveEntity(activePlayer, from, to);
+        } finally {
+            if (--moveDepth == 0) {
+                commitMove();
+            }
+        }
+
+        assert invariant();
+        return steps;
+    }
+
+    private PlayerPaths paths() {
+        if (playerPaths == null) {
+            playerPaths = new PlayerPaths(board);
+        }
+        return playerPaths;
+    }
+
+    /**
+     * Revert the changes of the last recorded move.
+     * @return whether there was a move to undo
+     */
+    public synchronized boolean undo() {
+        if (!history.canUndo()) {
+            return false;
+        }
+
+        History.Step step = history.undo();
+        lastPushedBox = -1;
+        moveCount--;
+        for (int i = step.size() - 1; i >= 0; i--) {
+            Entity entity = step.entity(i);
+            if (step.to(i) == History.REMOVED) {
+                positions.put(entity, board.pointOf(step.from(i)));
+                enterCell(step.from(i), entity);
+            } else {
+                relocateEntity(entity, step.to(i), step.from(i));
+            }
+        }
 
-        Point oldPosition = positionOf(entity);
-        Point destination = oldPosition.add(delta);
+        assert invariant();
+        return true;
+    }
 
-        // Collide with destination if there is an entity.
-        if (hasEntityAt(destination)) {
-            entityAt(destination).collideWith(entity, delta);
+    /**
+     * Execute the last undone move again.
+     * @return whether there was a move to redo
+     */
+    public synchronized boolean redo() {
+        if (!history.canRedo()) {
+            return false;
         }
 
-        // Check whether the destination is now free. If so, execute the move.
-        if (!hasEntityAt(destination) &&
-                tileAt(destination).canBeOccupied() &&
-                entities.containsValue(entity)) {
-            moveEntity(entity, delta);
+        History.Step step = history.redo();
+        lastPushedBox = -1;
+        moveCount++;
+        for (int i = 0; i < step.size(); i++) {
+            Entity entity = step.entity(i);
+            if (step.to(i) == History.REMOVED) {
+                positions.remove(entity);
+                leaveCell(step.from(i), entity);
+            } else {
+                relocateEntity(entity, step.from(i), step.to(i));
+            }
         }
 
         assert invariant();
+        return true;
+    }
+
+    public boolean canUndo() {
+        return history.canUndo();
+    }
+
+    public boolean canRedo() {
+        return history.canRedo();
+    }
+
+    public synchronized int getHistoryLimit() {
+        return history.getLimit();
+    }
+
+    /**
+     * Change the maximal number of moves that can be undone. The most
+     * recent moves are kept when the limit is lowered.
+     * @param limit new limit, must not be negative
+     */
+    public synchronized void setHistoryLimit(int limit) {
+        assert limit >= 0;
+        history.setLimit(limit);
+    }
+
+    /**
+     * Move the given entity between the cells with the given indices without
+     * collision handling and without recording the move.
+     */
+    private void relocateEntity(Entity entity, int from, int to) {
+        leaveCell(from, entity);
+        enterCell(to, entity);
+        positions.put(entity, board.pointOf(to));
     }
 
     /**
@@ -241,15 +588,9 @@ public class Game {
      */
     private Point positionOf(Entity entity) {
         assert entity != null;
-        assert entities.containsValue(entity);
+        assert positions.containsKey(entity);
 
-        for (Point p : entities.keySet()) {
-            if (entities.get(p) == entity) {
-                return p;
-            }
-        }
-        assert false : "should not be reached";
-        return null;
+        return positions.get(entity);
     }
 
     /**
@@ -258,11 +599,126 @@ public class Game {
      * A game is solved when all boxes are on a goal tile.
      */
     public boolean isOver() {
-        boolean result = true;
-        for (BoxEntity box : boxes) {
-            result = result && tileAt(positionOf(box)).isGoalTile();
+        return boxesOnGoal == boxes.size();
+    }
+
+    /**
+     * Return the number of boxes that currently stand on a goal tile.
+     */
+    public int getBoxesOnGoalCount() {
+        return boxesOnGoal;
+    }
+
+    /**
+     * Return whether the last push has made the level unsolvable, i.e.
+     * whether the pushed box is frozen off a goal or has closed a corral
+     * that can never be opened (see {@link DeadlockDetector}). Only
+     * deadlocks caused by the last push are found; the check is
+     * conservative and may miss deadlocks. Entities other than the player
+     * and boxes (explosives, breakable walls) are treated as floor, since
+     * they may still be moved or destroyed.
+     *
+     * The check is only done if enabled with
+     * {@link GameBuilder#setDeadlockWarning(boolean)}, since its detector
+     * keeps several arrays of the board size per game; otherwise this
+     * method returns false.
+     */
+    public boolean isDeadlocked() {
+        if (!deadlockWarning || lastPushedBox < 0 || !(board.entityAt(lastPushedBox) instanceof BoxEntity)) {
+            return false;
+        }
+        // walking does not change the result, so it is only computed once
+        // per push even though renderers ask on every frame
+        if (deadlockBox == lastPushedBox && deadlockVersion == layoutVersion) {
+            return deadlocked;
+        }
+        if (deadlockDetector == null) {
+            deadlockDetector = new DeadlockDetector(new SolverLevel(this));
+            deadlockPosition = new DeadlockDetector.Position() {
+                @Override
+                public boolean isWall(int cell) {
+                    return board.isWall(cell);
+                }
+
+                @Override
+                public boolean isBox(int cell) {
+                    return board.entityAt(cell) instanceof BoxEntity;
+                }
+            };
+        }
+        deadlocked = deadlockDetector.isDeadlocked(deadlockPosition, lastPushedBox,
+                board.index(positionOf(activePlayer)));
+        deadlockBox = lastPushedBox;
+        deadlockVersion = layoutVersion;
+        return deadlocked;
+    }
+
+    /**
+     * Return the Zobrist hash of the current position, i.e. of the cells of
+     * all entities on the board (see {@link Zobrist}).
+     */
+    public long getZobristHash() {
+        return zobristHash;
+    }
+
+    /**
+     * Return the number of times an entity has entered or left a cell since
+     * the game was created, by moves as well as by undo and redo.
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Return the index of the cell of the given change, counted from 0 (see
+     * {@link Game#getChangeCount()}). Only the last {@link Game#CHANGE_LOG_SIZE}
+     * changes are kept, so renderers can redraw just the changed cells as
+     * long as they have not fallen further behind.
+     */
+    public int changedCell(long change) {
+        assert change >= 0 && change < changeCount && changeCount - change <= CHANGE_LOG_SIZE;
+        return changedCells[(int) (change % CHANGE_LOG_SIZE)];
+    }
+
+    /**
+     * Return the total number of boxes in the game.
+     */
+    public int getBoxCount() {
+        return boxes.size();
+    }
+
+    /**
+     * Place the given entity on the cell with the given index and update
+     * the number of boxes on goal tiles and the hash accordingly.
+     */
+    private void enterCell(int index, Entity entity) {
+        assert !board.hasEntityAt(index);
+        board.setEntity(index, entity);
+        zobristHash ^= Zobrist.key(index, entity);
+        changedCells[(int) (changeCount++ % CHANGE_LOG_SIZE)] = index;
+        if (board.isGoal(index) && entity instanceof BoxEntity) {
+            boxesOnGoal++;
+        }
+        if (!(entity instanceof PlayerEntity)) {
+            layoutVersion++;
+        }
+    }
+
+    /**
+     * Remove the given entity from the cell with the given index and update
+     * the number of boxes on goal tiles and the hash accordingly.
+     */
+    private void leaveCell(int index, Entity entity) {
+        assert board.entityAt(index) == entity;
+        if (board.isGoal(index) && entity instanceof BoxEntity) {
+            boxesOnGoal--;
+        }
+        board.setEntity(index, null);
+        zobristHash ^= Zobrist.key(index, entity);
+        changedCells[(int) (changeCount++ % CHANGE_LOG_SIZE)] = index;
+        if (!(entity instanceof PlayerEntity)) {
+            layoutVersion++;
         }
-        return result;
     }
 
     public PlayerEntity getPlayer() {
@@ -290,36 +746,77 @@ public class Game {
      */
     private void setEntityTo(Point point, Entity entity) {
         assertValidPosition(point);
-        assert !entities.containsValue(entity);
+        assert !positions.containsKey(entity);
 
         if (hasEntityAt(point)) {
-            tileAt(point).leave(entityAt(point));
+            Entity replaced = entityAt(point);
+            leaveCell(board.index(point), replaced);
+            positions.remove(replaced);
         }
 
-        entities.put(point, entity);
-        tileAt(point).enter(entity);
+        positions.put(entity, point);
+        enterCell(board.index(point), entity);
 
         assert entityAt(point) == entity;
     }
 
+    /**
+     * Return the positions of all entities on the board, which must not be
+     * changed by the caller.
+     */
+    Map<Entity, Point> getPositions() {
+        return positions;
+    }
+
+    /**
+     * Replace all entities by the player on the given cell and the given
+     * entities on the given cells, and set the move counter. The history
+     * is cleared. Used to restore snapshots (see {@link GameSnapshot}).
+     * @param cells distinct free cells other than playerCell, one per entity
+     */
+    synchronized void restore(int playerCell, Entity[] entities, int[] cells, int moveCount) {
+        assert entities.length == cells.length;
+        assert moveDepth == 0;
+
+        for (Map.Entry<Entity, Point> entry : positions.entrySet()) {
+            leaveCell(board.index(entry.getValue()), entry.getKey());
+        }
+        positions.clear();
+        boxes = new HashSet<>();
+
+        positions.put(activePlayer, board.pointOf(playerCell));
+        enterCell(playerCell, activePlayer);
+        for (int i = 0; i < entities.length; i++) {
+            entities[i].setGame(this);
+            positions.put(entities[i], board.pointOf(cells[i]));
+            enterCell(cells[i], entities[i]);
+            if (entities[i] instanceof BoxEntity) {
+                boxes.add((BoxEntity) entities[i]);
+            }
+        }
+
+        history.clear();
+        lastPushedBox = -1;
+        this.moveCount = moveCount;
+
+        assert invariant();
+    }
+
     /**
      * Remove entity from board. After removing the entity, the
      * game must still be valid; it is the responsibility of the
      * caller to ensure that this is satisfied.
      * @param entity entity to be removed, must not be null and on the board
      */
-    public void removeEntity(Entity entity) {
-        assert entity != null && entities.containsValue(entity);
+    public synchronized void removeEntity(Entity entity) {
+        assert entity != null && positions.containsKey(entity);
 
-        for (Map.Entry<Point, Entity> entry : entities.entrySet()) {
-            if (entry.getValue() == entity) {
-                entities.remove(entry.getKey());
-                tileAt(entry.getKey()).leave(entry.getValue());
+        Point position = positions.remove(entity);
+        leaveCell(board.index(position), entity);
+        history.recordRemoval(entity, board.index(position));
+        stepChanges++;
 
-                assert invariant();
-                return;
-            }
-        }
+        assert invariant();
     }
 
     /**
@@ -333,21 +830,60 @@ public class Game {
         private Point playerPosition; // can be set later, but must be done before calling create()
 
         // optional; initialize to empty containers
-        private final Set<GoalTile> goalTiles = new HashSet<>();
         private final Set<BoxEntity> boxes = new HashSet<>();
-        private final Tile[][] tiles;
-        private final Map<Point, Entity> entities = new HashMap<>();
+        private final Board board;
+        private final Map<Entity, Point> positions = new IdentityHashMap<>();
+        private int historyLimit = History.DEFAULT_LIMIT;
+        private int maxFrameRate;
+        private CollisionRules collisionRules = CollisionRules.standard();
+        private BitSet deadSquares; // of the template, until tiles are changed
+        private boolean deadlockWarning;
 
 
+        /**
+         * Create a builder using the renderer and input handler of the
+         * global {@link SokobanObjectProvider}.
+         */
         public GameBuilder(int width, int height) {
+            this(width, height,
+                    SokobanObjectProvider.instance().getRenderer(),
+                    SokobanObjectProvider.instance().getInputHandler());
+        }
+
+        /**
+         * Create a builder for a game using the given renderer and input
+         * handler. Games built this way do not depend on global state and
+         * can be created and run concurrently.
+         */
+        public GameBuilder(int width, int height, Renderer renderer, InputHandler inputHandler) {
             this.width = width;
             this.height = height;
-            this.renderer = SokobanObjectProvider.instance().getRenderer();
-            this.inputHandler = SokobanObjectProvider.instance().getInputHandler();
-            this.tiles = new Tile[width+1][height+1];
-            for (int x=1; x <= width; x++) {
-                for (int y=1; y <= height; y++) {
-                    tiles[x][y] = new FloorTile(new Point(x, y));
+            this.renderer = renderer;
+            this.inputHandler = inputHandler;
+            this.board = new Board(width, height);
+        }
+
+        /**
+         * Create a builder for a game of the given template using the given
+         * renderer and input handler. The layout of the template is shared,
+         * so only the entities of the template are created.
+         */
+        public GameBuilder(LevelTemplate template, Renderer renderer, InputHandler inputHandler) {
+            this.width = template.getWidth();
+            this.height = template.getHeight();
+            this.renderer = renderer;
+            this.inputHandler = inputHandler;
+            this.board = new Board(template.getLayout());
+            this.deadSquares = template.getDeadSquares();
+            this.collisionRules = template.getCollisionRules();
+            this.playerPosition = board.pointOf(template.getPlayerCell());
+            for (int i = 0; i < template.getEntityCount(); i++) {
+                int cell = template.getEntityCell(i);
+                Entity entity = template.createEntity(i);
+                board.setEntity(cell, entity);
+                positions.put(entity, board.pointOf(cell));
+                if (entity instanceof BoxEntity) {
+                    boxes.add((BoxEntity) entity);
                 }
             }
         }
@@ -359,10 +895,16 @@ public class Game {
          */
         public void setEntityTo(Point point, Entity entity) {
             assertValidPosition(point);
-            assert !entities.containsValue(entity);
+            assert !positions.containsKey(entity);
 
-            entities.put(point, entity);
-            tileAt(point).enter(entity);
+            int index = board.index(point);
+            if (board.hasEntityAt(index)) {
+                Entity replaced = board.entityAt(index);
+                positions.remove(replaced);
+                boxes.remove(replaced);
+            }
+            board.setEntity(index, entity);
+            positions.put(entity, point);
 
             assert entityAt(point) == entity;
         }
@@ -374,7 +916,7 @@ public class Game {
         public Tile tileAt(Point point) {
             assertValidPosition(point);
 
-            return tiles[point.getX()][point.getY()];
+            return board.tileAt(point);
         }
 
         /**
@@ -401,8 +943,8 @@ public class Game {
          */
         public Entity entityAt(Point point) {
             assertValidPosition(point);
-            assert entities.containsKey(point);
-            return entities.get(point);
+            assert board.hasEntityAt(board.index(point));
+            return board.entityAt(board.index(point));
         }
 
         /**
@@ -423,9 +965,7 @@ public class Game {
          */
         public void setGoalTile(Point p) {
             assertValidPosition(p);
-            GoalTile tile = new GoalTile(p);
-            this.goalTiles.add(tile);
-            setTileTo(p, tile);
+            setTileTo(p, new GoalTile(p));
         }
 
         /**
@@ -436,8 +976,47 @@ public class Game {
         public void setTileTo(Point point, Tile tile) {
             assertValidPosition(point);
             assert tile != null;
-            tiles[point.getX()][point.getY()] = tile;
-            assert tileAt(point) == tile;
+            board.setTile(board.index(point), tile);
+            deadSquares = null;
+        }
+
+        /**
+         * Set the maximal number of moves that can be undone.
+         * @param limit must not be negative
+         */
+        public void setHistoryLimit(int limit) {
+            assert limit >= 0;
+            this.historyLimit = limit;
+        }
+
+        /**
+         * Render on a separate thread with at most the given number of
+         * frames per second (see {@link AsyncRenderer}); 0 renders every
+         * frame synchronously, which is the default.
+         * @param framesPerSecond must not be negative
+         */
+        public void setMaxFrameRate(int framesPerSecond) {
+            assert framesPerSecond >= 0;
+            this.maxFrameRate = framesPerSecond;
+        }
+
+        /**
+         * Set the rules for collisions between entities; the default are
+         * the {@link CollisionRules#standard() standard rules}.
+         * @param rules must not be null
+         */
+        public void setCollisionRules(CollisionRules rules) {
+            assert rules != null;
+            this.collisionRules = rules;
+        }
+
+        /**
+         * Set whether the game checks pushes for deadlocks, so that
+         * renderers can warn about them (see {@link Game#isDeadlocked()});
+         * disabled by default.
+         */
+        public void setDeadlockWarning(boolean enabled) {
+            this.deadlockWarning = enabled;
         }
 
         /**
@@ -0,0 +1,317 @@
+package sokoban.game;
+
+import sokoban.entity.CollisionRules;
+import sokoban.entity.Entity;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Compact binary snapshots of the dynamic state of a {@link Game}.
+ *
+ * A snapshot stores the state of the entities, not the level: it can only
+ * be restored into a game of the same layout, e.g. one started from the
+ * same {@link LevelTemplate}. The format is
+ * <pre>
+ *     int     magic ("SKSN")
+ *     byte    version
+ *     int     length of the rest of the snapshot
+ *     long    layout hash (see {@link Board#layoutHash()})
+ *     varint  move counter
+ *     varint  cell of the player
+ *     varint  number of groups
+ * </pre>
+ * in big-endian byte order, followed by one group per collision type of the
+ * entities on the board (see {@link CollisionRules}): the type, the number
+ * of entities and their cells in ascending order, each as the varint
+ * difference to the previous cell. Entities usually take one or two bytes
+ * each.
+ *
+ * Entities of type {@link CollisionRules#CUSTOM} cannot be stored. The
+ * history of the game is not stored either; restoring clears it.
+ */
+public final class GameSnapshot {
+    static final int MAGIC = 0x534b534e; // "SKSN"
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 9;
+
+    private GameSnapshot() {}
+
+    /**
+     * Return an upper bound of the size of a snapshot of the given game.
+     */
+    public static int maxSize(Game game) {
+        return HEADER_SIZE + 8 + 5 * 3 + 10 * game.getCollisionRules().getTypeCount()
+                + 5 * game.getPositions().size();
+    }
+
+    /**
+     * Return an upper bound of the size of any valid snapshot for the
+     * layout of the given game, which may have had more entities than the
+     * game has now.
+     */
+    private static int maxReadSize(Game game) {
+        return HEADER_SIZE + 8 + 5 * 3 + 10 * game.getCollisionRules().getTypeCount()
+                + 5 * game.getBoard().size();
+    }
+
+    /**
+     * Write a snapshot of the given game at the position of the given
+     * buffer, which must have {@link GameSnapshot#maxSize(Game)} bytes left.
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the game contains entities of type {@link CollisionRules#CUSTOM}
+     */
+    public static int write(Game game, ByteBuffer buffer) {
+        synchronized (game) {
+            assert buffer.remaining() >= maxSize(game);
+            ByteOrder order = buffer.order();
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            try {
+                return writeBigEndian(game, buffer);
+            } finally {
+                buffer.order(order);
+            }
+        }
+    }
+
+    private static int writeBigEndian(Game game, ByteBuffer buffer) {
+        Board board = game.getBoard();
+        Map<Entity, Point> positions = game.getPositions();
+        int typeCount = game.getCollisionRules().getTypeCount();
+
+        // sort the cells of the entities by type and cell
+        int[] counts = new int[typeCount + 1];
+        int playerCell = -1;
+        for (Map.Entry<Entity, Point> entry : positions.entrySet()) {
+            int type = typeOf(entry.getKey());
+            if (type == CollisionRules.PLAYER) {
+                playerCell = board.index(entry.getValue());
+            } else {
+                counts[type + 1]++;
+            }
+        }
+        for (int type = 0; type < typeCount; type++) {
+            counts[type + 1] += counts[type];
+        }
+        int[] cells = new int[positions.size()];
+        int[] next = Arrays.copyOf(counts, typeCount);
+        for (Map.Entry<Entity, Point> entry : positions.entrySet()) {
+            int type = typeOf(entry.getKey());
+            if (type != CollisionRules.PLAYER) {
+                cells[next[type]++] = board.index(entry.getValue());
+            }
+        }
+
+        int start = buffer.position();
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.putInt(0); // length, set below
+        buffer.putLong(board.layoutHash());
+        putVarint(buffer, game.getMoveCount());
+        putVarint(buffer, playerCell);
+        int groups = 0;
+        for (int type = 0; type < typeCount; type++) {
+            if (counts[type + 1] > counts[type]) {
+                groups++;
+            }
+        }
+        putVarint(buffer, groups);
+        for (int type = 0; type < typeCount; type++) {
+            int from = counts[type], to = counts[type + 1];
+            if (from == to) {
+                continue;
+            }
+            Arrays.sort(cells, from, to);
+            putVarint(buffer, type);
+            putVarint(buffer, to - from);
+            int previous = 0;
+            for (int i = from; i < to; i++) {
+                putVarint(buffer, cells[i] - previous);
+                previous = cells[i];
+            }
+        }
+        int length = buffer.position() - start;
+        buffer.putInt(start + 5, length - HEADER_SIZE);
+        return length;
+    }
+
+    /**
+     * Write a snapshot of the given game to the given channel, e.g. a
+     * {@link java.nio.channels.FileChannel}.
+     */
+    public static void write(Game game, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(maxSize(game));
+        write(game, buffer);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Restore the snapshot at the position of the given buffer into the
+     * given game, whose layout must be the one of the snapshot. The
+     * position is moved behind the snapshot.
+     * @throws IOException if the buffer does not contain a valid snapshot
+     * of the layout of the game; the game is unchanged in this case
+     */
+    public static void read(ByteBuffer buffer, Game game) throws IOException {
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                throw new IOException("not a snapshot");
+            }
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new EOFException("snapshot is truncated");
+            }
+            ByteBuffer body = buffer.slice();
+            body.limit(length);
+            buffer.position(buffer.position() + length);
+            readBody(body, game);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("snapshot is truncated");
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    /**
+     * Restore the snapshot read from the given channel into the given game
+     * (see {@link GameSnapshot#read(ByteBuffer, Game)}). Exactly the bytes
+     * of the snapshot are read.
+     */
+    public static void read(ReadableByteChannel channel, Game game) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header);
+        header.flip();
+        if (header.getInt(0) != MAGIC || header.get(4) != VERSION) {
+            throw new IOException("not a snapshot");
+        }
+        // check the length before allocating, the header may be corrupt
+        int length = header.getInt(5);
+        if (length < 0 || length > maxReadSize(game) - HEADER_SIZE) {
+            throw new IOException("invalid snapshot length " + length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        buffer.put(header);
+        readFully(channel, buffer);
+        buffer.flip();
+        read(buffer, game);
+    }
+
+    private static void readBody(ByteBuffer body, Game game) throws IOException {
+        synchronized (game) {
+            Board board = game.getBoard();
+            CollisionRules rules = game.getCollisionRules();
+            if (body.getLong() != board.layoutHash()) {
+                throw new IOException("snapshot belongs to another level");
+            }
+            int moveCount = getVarint(body);
+            int playerCell = getCell(body, board);
+
+            int groups = getVarint(body);
+            Entity[] entities = new Entity[0];
+            int[] cells = new int[0];
+            int count = 0, boxes = 0;
+            for (int group = 0; group < groups; group++) {
+                int type = getVarint(body);
+                int size = getVarint(body);
+                if (type == CollisionRules.PLAYER || type >= rules.getTypeCount() || size > body.remaining()) {
+                    throw new IOException("invalid entity group");
+                }
+                entities = Arrays.copyOf(entities, count + size);
+                cells = Arrays.copyOf(cells, count + size);
+                int previous = 0;
+                for (int i = 0; i < size; i++) {
+                    int cell = previous + getVarint(body);
+                    if (cell < 0 || cell >= board.size() || !board.canBeOccupied(cell)) {
+                        throw new IOException("invalid entity cell " + cell);
+                    }
+                    entities[count] = LevelTemplate.createEntity(type, rules);
+                    cells[count++] = cell;
+                    previous = cell;
+                }
+                if (type == CollisionRules.BOX) {
+                    boxes += size;
+                }
+            }
+            if (body.hasRemaining()) {
+                throw new IOException("unexpected data after snapshot");
+            }
+
+            int[] sorted = Arrays.copyOf(cells, count + 1);
+            sorted[count] = playerCell;
+            Arrays.sort(sorted);
+            for (int i = 1; i < sorted.length; i++) {
+                if (sorted[i] == sorted[i - 1]) {
+                    throw new IOException("two entities on cell " + sorted[i]);
+                }
+            }
+            if (boxes > board.getGoalCount()) {
+                throw new IOException("more boxes than goals");
+            }
+
+            game.restore(playerCell, entities, cells, moveCount);
+        }
+    }
+
+    private static int typeOf(Entity entity) {
+        int type = entity.getCollisionType();
+        if (type == CollisionRules.CUSTOM) {
+            throw new IllegalArgumentException("cannot store entity " + entity);
+        }
+        return type;
+    }
+
+    private static int getCell(ByteBuffer buffer, Board board) throws IOException {
+        int cell = getVarint(buffer);
+        if (cell >= board.size() || !board.canBeOccupied(cell)) {
+            throw new IOException("invalid cell " + cell);
+        }
+        return cell;
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        assert value >= 0;
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Read a non-negative varint of at most 31 bits.
+     */
+    private static int getVarint(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("invalid varint");
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("snapshot is truncated");
+            }
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package sokoban.game;
+
+import sokoban.entity.CollisionRules;
+import sokoban.entity.Entity;
+import sokoban.io.input.Action;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable state of the entities of a game, for trying out moves without
+ * changing or copying a {@link Game}, e.g. to search for hints or to show
+ * previews.
+ *
+ * The entities other than the player are kept in a persistent trie that
+ * maps cell indices to collision types (see {@link CollisionRules}), with
+ * 32 children per node. A move copies only the nodes on the paths to the
+ * cells that change, i.e. O(log n) nodes for a board of n cells, and
+ * shares everything else with the previous state, so any number of
+ * branches can be kept cheaply.
+ *
+ * Moves are resolved with the collision rules of the game like in
+ * {@link Game#attemptMoveEntity(Entity, Point)}. Entities of type
+ * {@link CollisionRules#CUSTOM} are not supported.
+ */
+public final class GameState {
+    /** Type returned for cells without an entity. */
+    public static final int EMPTY = -1;
+
+    private static final int BITS = 5, FANOUT = 1 << BITS, MASK = FANOUT - 1;
+
+    private final Layout layout;
+    private final Object root; // inner nodes are Object[], leaves byte[] of type + 1
+    private final int playerCell;
+    private final int boxes, boxesOnGoal;
+    private final int moveCount;
+    private final long zobristHash;
+
+    /**
+     * The static part shared by all states of a game.
+     */
+    private static final class Layout {
+        private final Board board;
+        private final CollisionRules rules;
+        private final int shift; // of the root node
+
+        Layout(Board board, CollisionRules rules) {
+            this.board = board;
+            this.rules = rules;
+            int shift = 0;
+            while (board.size() > 1 << (shift + BITS)) {
+                shift += BITS;
+            }
+            this.shift = shift;
+        }
+    }
+
+    private GameState(Layout layout, Object root, int playerCell, int boxes, int boxesOnGoal,
+                      int moveCount, long zobristHash) {
+        this.layout = layout;
+        this.root = root;
+        this.playerCell = playerCell;
+        this.boxes = boxes;
+        this.boxesOnGoal = boxesOnGoal;
+        this.moveCount = moveCount;
+        this.zobristHash = zobristHash;
+    }
+
+    /**
+     * Return the current state of the given game.
+     * @throws IllegalArgumentException if the game contains entities of type {@link CollisionRules#CUSTOM}
+     */
+    public static GameState of(Game game) {
+        synchronized (game) {
+            Board board = game.getBoard();
+            Layout layout = new Layout(board, game.getCollisionRules());
+            Object root = null;
+            int boxes = 0, boxesOnGoal = 0;
+            for (Map.Entry<Entity, Point> entry : game.getPositions().entrySet()) {
+                int type = entry.getKey().getCollisionType();
+                if (type == CollisionRules.CUSTOM) {
+                    throw new IllegalArgumentException("cannot represent entity " + entry.getKey());
+                }
+                if (type == CollisionRules.PLAYER) {
+                    continue;
+                }
+                int cell = board.index(entry.getValue());
+                root = set(root, layout.shift, cell, type);
+                if (type == CollisionRules.BOX) {
+                    boxes++;
+                    if (board.isGoal(cell)) {
+                        boxesOnGoal++;
+                    }
+                }
+            }
+            int playerCell = board.index(game.getPositions().get(game.getPlayer()));
+            return new GameState(layout, root, playerCell, boxes, boxesOnGoal,
+                    game.getMoveCount(), game.getZobristHash());
+        }
+    }
+
+    /**
+     * Replace the entities of the given game by the ones of this state and
+     * set its move counter; its history is cleared. The game must be the
+     * one this state was derived from or have the same layout.
+     */
+    public void applyTo(Game game) {
+        synchronized (game) {
+            assert game.getBoard().layoutHash() == layout.board.layoutHash();
+            int count = countEntities(root, layout.shift);
+            Entity[] entities = new Entity[count];
+            int[] cells = new int[count];
+            int[] next = {0};
+            forEach(root, layout.shift, 0, (cell, type) -> {
+                entities[next[0]] = LevelTemplate.createEntity(type, game.getCollisionRules());
+                cells[next[0]++] = cell;
+            });
+            game.restore(playerCell, entities, cells, moveCount);
+            assert game.getZobristHash() == zobristHash;
+        }
+    }
+
+    /**
+     * Return the state after the player has tried to move by the given
+     * delta, or this state if nothing changes.
+     */
+    public GameState move(Point delta) {
+        assert delta != null;
+        Board board = layout.board;
+        Object root = this.root;
+        int boxesOnGoal = this.boxesOnGoal;
+        long hash = zobristHash;
+
+        // Follow the entities in front of the player as long as they are pushed.
+        int end = playerCell; // last cell of the chain
+        int moverType = CollisionRules.PLAYER;
+        int length = 1;
+        while (true) {
+            int destination = destinationOf(end, delta);
+            if (destination < 0) {
+                break;
+            }
+            int targetType = get(root, layout.shift, destination);
+            if (targetType == EMPTY) {
+                break;
+            }
+            CollisionRules.Outcome outcome = layout.rules.outcome(moverType, targetType);
+            if (outcome == CollisionRules.Outcome.PUSH) {
+                end = destination;
+                moverType = targetType;
+                length++;
+                continue;
+            }
+            boolean destroyTarget = outcome == CollisionRules.Outcome.DESTROY_TARGET
+                    || outcome == CollisionRules.Outcome.DESTROY_BOTH;
+            boolean destroyMover = outcome == CollisionRules.Outcome.DESTROY_MOVER
+                    || outcome == CollisionRules.Outcome.DESTROY_BOTH;
+            if (destroyTarget) {
+                // rules never destroy the player or boxes
+                root = set(root, layout.shift, destination, EMPTY);
+                hash ^= key(destination, targetType);
+            }
+            if (destroyMover) {
+                root = set(root, layout.shift, end, EMPTY);
+                hash ^= key(end, moverType);
+                // the entities behind the mover move up to its cell
+                end = reverseOf(end, delta);
+                length--;
+            }
+            break;
+        }
+
+        // Move the chain from the front while the destinations are free.
+        int player = playerCell;
+        int cell = end;
+        boolean moved = false;
+        for (int i = length - 1; i >= 0; i--, cell = reverseOf(cell, delta)) {
+            int destination = destinationOf(cell, delta);
+            if (destination < 0 || !board.canBeOccupied(destination)
+                    || get(root, layout.shift, destination) != EMPTY) {
+                break;
+            }
+            if (i == 0) {
+                hash ^= Zobrist.key(cell, CollisionRules.PLAYER) ^ Zobrist.key(destination, CollisionRules.PLAYER);
+                player = destination;
+            } else {
+                int type = get(root, layout.shift, cell);
+                root = set(set(root, layout.shift, cell, EMPTY), layout.shift, destination, type);
+                hash ^= key(cell, type) ^ key(destination, type);
+                if (type == CollisionRules.BOX) {
+                    boxesOnGoal += (board.isGoal(destination) ? 1 : 0) - (board.isGoal(cell) ? 1 : 0);
+                }
+            }
+            moved = true;
+        }
+
+        if (!moved && root == this.root) {
+            return this;
+        }
+        return new GameState(layout, root, player, boxes, boxesOnGoal, moveCount + 1, hash);
+    }
+
+    /**
+     * Return the state after the given move action; undo and redo are not
+     * supported, since states do not have a history.
+     */
+    public GameState move(Action action) {
+        switch (action) {
+            case MOVE_UP:
+                return move(Point.UP);
+            case MOVE_DOWN:
+                return move(Point.DOWN);
+            case MOVE_LEFT:
+                return move(Point.LEFT);
+            case MOVE_RIGHT:
+                return move(Point.RIGHT);
+            default:
+                throw new IllegalArgumentException("not a move: " + action);
+        }
+    }
+
+    /**
+     * Return the collision type of the entity on the cell with the given
+     * {@link Board} index, {@link CollisionRules#PLAYER} for the player or
+     * {@link GameState#EMPTY} if there is none.
+     */
+    public int typeAt(int cell) {
+        assert cell >= 0 && cell < layout.board.size();
+        return cell == playerCell ? CollisionRules.PLAYER : get(root, layout.shift, cell);
+    }
+
+    public boolean isBox(int cell) {
+        return typeAt(cell) == CollisionRules.BOX;
+    }
+
+    public int getPlayerCell() {
+        return playerCell;
+    }
+
+    public Point getPlayerPosition() {
+        return layout.board.pointOf(playerCell);
+    }
+
+    public int getBoxCount() {
+        return boxes;
+    }
+
+    public int getBoxesOnGoalCount() {
+        return boxesOnGoal;
+    }
+
+    /**
+     * Return whether all boxes are on goal tiles (see {@link Game#isOver()}).
+     */
+    public boolean isOver() {
+        return boxesOnGoal == boxes;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Return the Zobrist hash of the position, which equals the hash of a
+     * game in the same position (see {@link Game#getZobristHash()}).
+     */
+    public long getZobristHash() {
+        return zobristHash;
+    }
+
+    /**
+     * Receives the entities of a state, see {@link GameState#forEachEntity(EntityConsumer)}.
+     */
+    public interface EntityConsumer {
+        void accept(int cell, int type);
+    }
+
+    /**
+     * Pass the cell and collision type of every entity other than the
+     * player to the given consumer, in ascending order of the cells.
+     */
+    public void forEachEntity(EntityConsumer consumer) {
+        forEach(root, layout.shift, 0, consumer);
+    }
+
+    /**
+     * States are equal if they belong to the same game and have the player
+     * and all entities on the same cells; the move counter is ignored.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof GameState)) {
+            return false;
+        }
+        GameState state = (GameState) other;
+        return layout.board == state.layout.board
+                && playerCell == state.playerCell
+                && zobristHash == state.zobristHash
+                && sameEntities(root, state.root, layout.shift);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(zobristHash);
+    }
+
+    /**
+     * Return the cell reached from the given cell by moving by delta, or -1
+     * if that leaves the board.
+     */
+    private int destinationOf(int cell, Point delta) {
+        Board board = layout.board;
+        int x = board.xOf(cell) + delta.getX(), y = board.yOf(cell) + delta.getY();
+        if (x < 1 || x > board.getWidth() || y < 1 || y > board.getHeight()) {
+            return -1;
+        }
+        return board.index(x, y);
+    }
+
+    private int reverseOf(int cell, Point delta) {
+        Board board = layout.board;
+        return board.index(board.xOf(cell) - delta.getX(), board.yOf(cell) - delta.getY());
+    }
+
+    private static long key(int cell, int type) {
+        return Zobrist.key(cell, type);
+    }
+
+    private static int get(Object node, int shift, int cell) {
+        for (int s = shift; s > 0; s -= BITS) {
+            if (node == null) {
+                return EMPTY;
+            }
+            node = ((Object[]) node)[(cell >>> s) & MASK];
+        }
+        return node == null ? EMPTY : ((byte[]) node)[cell & MASK] - 1;
+    }
+
+    /**
+     * Return a copy of the given node with the type of the given cell
+     * replaced; only the nodes on the path to the cell are copied.
+     */
+    private static Object set(Object node, int shift, int cell, int type) {
+        if (shift == 0) {
+            byte[] leaf = node == null ? new byte[FANOUT] : ((byte[]) node).clone();
+            leaf[cell & MASK] = (byte) (type + 1);
+            return leaf;
+        }
+        Object[] inner = node == null ? new Object[FANOUT] : ((Object[]) node).clone();
+        int slot = (cell >>> shift) & MASK;
+        inner[slot] = set(inner[slot], shift - BITS, cell, type);
+        return inner;
+    }
+
+    private static void forEach(Object node, int shift, int base, EntityConsumer consumer) {
+        if (node == null) {
+            return;
+        }
+        if (shift == 0) {
+            byte[] leaf = (byte[]) node;
+            for (int i = 0; i < FANOUT; i++) {
+                if (leaf[i] != 0) {
+                    consumer.accept(base + i, leaf[i] - 1);
+                }
+            }
+            return;
+        }
+        Object[] inner = (Object[]) node;
+        for (int i = 0; i < FANOUT; i++) {
+            forEach(inner[i], shift - BITS, base + (i << shift), consumer);
+        }
+    }
+
+    private static int countEntities(Object node, int shift) {
+        int[] count = {0};
+        forEach(node, shift, 0, (cell, type) -> count[0]++);
+        return count[0];
+    }
+
+    private static boolean sameEntities(Object a, Object b, int shift) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return countEntities(a == null ? b : a, shift) == 0;
+        }
+        if (shift == 0) {
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        }
+        Object[] x = (Object[]) a, y = (Object[]) b;
+        for (int i = 0; i < FANOUT; i++) {
+            if (!sameEntities(x[i], y[i], shift - BITS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,194 @@
+package sokoban.game;
+
+import sokoban.entity.Entity;
+
+import java.util.Arrays;
+
+/**
+ * Journal of the moves executed in a {@link Game}, used for undo and redo.
+ *
+ * Every accepted move is recorded as a {@link Step}, i.e. the entities that
+ * moved (from which cell to which cell) or were removed during the move.
+ * No snapshots of the board are taken. Steps are kept in a ring buffer of
+ * fixed capacity; when the limit is exceeded the oldest step is dropped.
+ * The storage of dropped steps is reused, so recording does not allocate
+ * once the buffer has been filled.
+ */
+class History {
+    static final int DEFAULT_LIMIT = 10000;
+
+    /** Destination used for entities that were removed from the board. */
+    static final int REMOVED = -1;
+
+    private Step[] steps;
+    private int first, undoCount, redoCount;
+    private Step current, spare;
+
+    History(int limit) {
+        assert limit >= 0;
+        this.steps = new Step[limit];
+    }
+
+    int getLimit() {
+        return steps.length;
+    }
+
+    /**
+     * Change the maximal number of recorded steps. The most recent steps
+     * that can be undone are kept, steps that could be redone are dropped.
+     */
+    void setLimit(int limit) {
+        assert limit >= 0;
+        assert current == null;
+
+        int kept = Math.min(undoCount, limit);
+        Step[] newSteps = new Step[limit];
+        for (int i = 0; i < kept; i++) {
+            newSteps[i] = steps[slot(undoCount - kept + i)];
+        }
+        steps = newSteps;
+        first = 0;
+        undoCount = kept;
+        redoCount = 0;
+    }
+
+    /**
+     * Drop all steps.
+     */
+    void clear() {
+        assert current == null;
+        Arrays.fill(steps, null);
+        first = undoCount = redoCount = 0;
+    }
+
+    boolean canUndo() {
+        return undoCount > 0;
+    }
+
+    boolean canRedo() {
+        return redoCount > 0;
+    }
+
+    boolean isRecording() {
+        return current != null;
+    }
+
+    /**
+     * Start recording a new step. Changes are recorded until the step is
+     * finished with {@link History#commit()}.
+     */
+    void begin() {
+        assert current == null;
+        if (steps.length == 0) {
+            return;
+        }
+
+        if (spare == null) {
+            spare = new Step();
+        }
+        current = spare;
+        current.clear();
+    }
+
+    /**
+     * Finish the step started by {@link History#begin()}. Steps without any
+     * changes are discarded; otherwise the redo steps are dropped.
+     */
+    void commit() {
+        if (current == null) {
+            return;
+        }
+        if (current.size > 0) {
+            int slot = slot(undoCount);
+            spare = steps[slot];
+            steps[slot] = current;
+            if (undoCount == steps.length) {
+                first = slot(1);
+            } else {
+                undoCount++;
+            }
+            redoCount = 0;
+        }
+        current = null;
+    }
+
+    void recordMove(Entity entity, int from, int to) {
+        if (current != null) {
+            current.add(entity, from, to);
+        }
+    }
+
+    void recordRemoval(Entity entity, int from) {
+        if (current != null) {
+            current.add(entity, from, REMOVED);
+        }
+    }
+
+    /**
+     * Return the step to be undone and mark it as undone.
+     */
+    Step undo() {
+        assert canUndo() && current == null;
+        undoCount--;
+        redoCount++;
+        return steps[slot(undoCount)];
+    }
+
+    /**
+     * Return the step to be redone and mark it as done.
+     */
+    Step redo() {
+        assert canRedo() && current == null;
+        Step step = steps[slot(undoCount)];
+        undoCount++;
+        redoCount--;
+        return step;
+    }
+
+    private int slot(int offset) {
+        return (first + offset) % steps.length;
+    }
+
+    /**
+     * Changes made by a single move, in the order in which they happened.
+     */
+    static class Step {
+        private Entity[] entities = new Entity[4];
+        private int[] from = new int[4];
+        private int[] to = new int[4];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        Entity entity(int i) {
+            return entities[i];
+        }
+
+        int from(int i) {
+            return from[i];
+        }
+
+        int to(int i) {
+            return to[i];
+        }
+
+        private void add(Entity entity, int from, int to) {
+            if (size == entities.length) {
+                entities = Arrays.copyOf(entities, size * 2);
+                this.from = Arrays.copyOf(this.from, size * 2);
+                this.to = Arrays.copyOf(this.to, size * 2);
+            }
+            entities[size] = entity;
+            this.from[size] = from;
+            this.to[size] = to;
+            size++;
+        }
+
+        private void clear() {
+            Arrays.fill(entities, 0, size, null);
+            size = 0;
+        }
+    }
+}
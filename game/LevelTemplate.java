@@ -0,0 +1,212 @@
+package sokoban.game;
+
+import sokoban.entity.BoxEntity;
+import sokoban.entity.BreakableWallEntity;
+import sokoban.entity.CollisionRules;
+import sokoban.entity.Entity;
+import sokoban.entity.ExplosiveEntity;
+import sokoban.entity.GenericEntity;
+import sokoban.io.input.InputHandler;
+import sokoban.io.output.Renderer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Immutable description of a level from which any number of games can be
+ * started.
+ *
+ * The template holds everything that never changes during a game: the cell
+ * types, the dead squares and the positions of the cells. Games started
+ * from it share these and only get their own entities, so
+ * {@link LevelTemplate#newGame(Renderer, InputHandler)} allocates in
+ * proportion to the number of entities instead of the size of the board.
+ * Entities are described by their collision type (see {@link CollisionRules}),
+ * which is why entities of type {@link CollisionRules#CUSTOM} cannot be
+ * part of a template.
+ *
+ * Templates are safe to share between threads.
+ */
+public final class LevelTemplate {
+    private final Board layout;
+    private final BitSet deadSquares;
+    private final CollisionRules collisionRules;
+    private final int playerCell;
+    private final int[] entityCells;
+    private final int[] entityTypes;
+
+    private LevelTemplate(Builder builder) {
+        this.layout = builder.layout;
+        this.collisionRules = builder.collisionRules;
+        this.playerCell = builder.playerCell;
+        for (int i = 0; i < layout.size(); i++) {
+            layout.pointOf(i);
+        }
+        this.deadSquares = DeadSquares.compute(layout);
+        layout.layoutHash();
+
+        int count = 0;
+        for (int cell = 0; cell < builder.types.length; cell++) {
+            if (builder.types[cell] != CollisionRules.CUSTOM && cell != playerCell) {
+                count++;
+            }
+        }
+        this.entityCells = new int[count];
+        this.entityTypes = new int[count];
+        int i = 0;
+        for (int cell = 0; cell < builder.types.length; cell++) {
+            if (builder.types[cell] != CollisionRules.CUSTOM && cell != playerCell) {
+                entityCells[i] = cell;
+                entityTypes[i] = builder.types[cell];
+                i++;
+            }
+        }
+    }
+
+    public int getWidth() {
+        return layout.getWidth();
+    }
+
+    public int getHeight() {
+        return layout.getHeight();
+    }
+
+    /**
+     * Start a new game of this level using the renderer and input handler
+     * of the global {@link SokobanObjectProvider}.
+     */
+    public Game newGame() {
+        return newGame(SokobanObjectProvider.instance().getRenderer(),
+                SokobanObjectProvider.instance().getInputHandler());
+    }
+
+    /**
+     * Start a new game of this level using the given renderer and input handler.
+     */
+    public Game newGame(Renderer renderer, InputHandler inputHandler) {
+        return new Game.GameBuilder(this, renderer, inputHandler).build();
+    }
+
+    /**
+     * Return a new builder of a game of this level, e.g. to change further
+     * settings before building it.
+     */
+    public Game.GameBuilder newGameBuilder(Renderer renderer, InputHandler inputHandler) {
+        return new Game.GameBuilder(this, renderer, inputHandler);
+    }
+
+    Board getLayout() {
+        return layout;
+    }
+
+    BitSet getDeadSquares() {
+        return deadSquares;
+    }
+
+    CollisionRules getCollisionRules() {
+        return collisionRules;
+    }
+
+    int getPlayerCell() {
+        return playerCell;
+    }
+
+    int getEntityCount() {
+        return entityCells.length;
+    }
+
+    int getEntityCell(int i) {
+        return entityCells[i];
+    }
+
+    /**
+     * Create a new entity for the i-th entity of the template.
+     */
+    Entity createEntity(int i) {
+        return createEntity(entityTypes[i], collisionRules);
+    }
+
+    /**
+     * Create a new entity of the given collision type, which must not be
+     * the player or {@link CollisionRules#CUSTOM}.
+     */
+    static Entity createEntity(int type, CollisionRules rules) {
+        switch (type) {
+            case CollisionRules.BOX:
+                return new BoxEntity();
+            case CollisionRules.EXPLOSIVE:
+                return new ExplosiveEntity();
+            case CollisionRules.BREAKABLE_WALL:
+                return new BreakableWallEntity();
+            default:
+                return new GenericEntity(rules, type);
+        }
+    }
+
+    /**
+     * Helper class for creating {@link LevelTemplate} instances.
+     */
+    public static class Builder {
+        private final Board layout;
+        private final int[] types;
+        private int playerCell = -1;
+        private CollisionRules collisionRules = CollisionRules.standard();
+
+        /**
+         * Create a builder for a level of the given size with floor on every cell.
+         */
+        public Builder(int width, int height) {
+            assert width >= 0 && height >= 0;
+            this.layout = new Board(width, height);
+            this.types = new int[width * height];
+            Arrays.fill(types, CollisionRules.CUSTOM);
+        }
+
+        /**
+         * Set the type of the cell at the given position to one of
+         * {@link Board#FLOOR}, {@link Board#WALL} and {@link Board#GOAL}.
+         */
+        public void setCell(int x, int y, byte cell) {
+            assert cell == Board.FLOOR || cell == Board.WALL || cell == Board.GOAL;
+            layout.setCell(layout.index(x, y), cell);
+        }
+
+        /**
+         * Place an entity of the given collision type at the given position,
+         * replacing any entity there.
+         * @param type a type of the collision rules other than the player
+         */
+        public void setEntityTo(int x, int y, int type) {
+            assert type > CollisionRules.PLAYER && type < collisionRules.getTypeCount();
+            types[layout.index(x, y)] = type;
+        }
+
+        /**
+         * Set the player position; an entity at that position is dropped.
+         */
+        public void setPlayerTo(int x, int y) {
+            playerCell = layout.index(x, y);
+        }
+
+        /**
+         * Set the rules for collisions between entities; the default are
+         * the {@link CollisionRules#standard() standard rules}. Must be set
+         * before entities of types defined by the rules are placed.
+         * @param rules must not be null
+         */
+        public void setCollisionRules(CollisionRules rules) {
+            assert rules != null;
+            this.collisionRules = rules;
+        }
+
+        /**
+         * Before calling this method, the player position must have been set.
+         * The builder must not be used afterwards.
+         * @return a new template
+         */
+        public LevelTemplate build() {
+            assert playerCell >= 0;
+            return new LevelTemplate(this);
+        }
+    }
+}
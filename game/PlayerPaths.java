@@ -0,0 +1,170 @@
+package sokoban.game;
+
+import sokoban.entity.Entity;
+import sokoban.entity.PlayerEntity;
+
+import java.util.Arrays;
+
+/**
+ * Shortest walks of the player on a {@link Board} that do not push anything.
+ *
+ * Two breadth-first searches are cached: the region reachable from the
+ * player and the distances of all cells to the last requested target. Both
+ * only depend on the cells blocked by walls and by entities other than the
+ * player, so they remain valid while only the player moves. The caller
+ * passes a layout version that must change whenever any other entity moves
+ * or disappears; the searches are repeated only then.
+ *
+ * With a valid cache, reachability is answered in constant time and a path
+ * is walked in time proportional to its length by stepping to a neighbour
+ * that is one closer to the target.
+ */
+final class PlayerPaths {
+    private final Board board;
+    private final int width;
+    private final int[] queue;
+
+    // region reachable by the player: cells with regionMark == regionGeneration
+    private final int[] regionMark;
+    private int regionGeneration;
+    private long regionVersion = -1;
+
+    // distances to target, valid for cells with distanceMark == distanceGeneration
+    private final int[] distance;
+    private final int[] distanceMark;
+    private int distanceGeneration;
+    private long distanceVersion = -1;
+    private int target = -1;
+
+    PlayerPaths(Board board) {
+        assert board != null;
+        this.board = board;
+        this.width = board.getWidth();
+        this.queue = new int[board.size()];
+        this.regionMark = new int[board.size()];
+        this.distance = new int[board.size()];
+        this.distanceMark = new int[board.size()];
+    }
+
+    /**
+     * Return whether the player standing on cell from can walk to cell to
+     * without pushing.
+     */
+    boolean isReachable(int from, int to, long version) {
+        if (version != regionVersion || regionMark[from] != regionGeneration) {
+            regionGeneration = nextGeneration(regionMark, regionGeneration);
+            search(from, regionMark, regionGeneration, null);
+            regionVersion = version;
+        }
+        return regionMark[to] == regionGeneration;
+    }
+
+    /**
+     * Return the number of steps of the shortest walk from cell from to cell
+     * to, or -1 if there is none. Afterwards {@link PlayerPaths#nextStep(int)}
+     * follows that walk.
+     */
+    int distance(int from, int to, long version) {
+        if (!isReachable(from, to, version)) {
+            return -1;
+        }
+        if (to != target || version != distanceVersion) {
+            distanceGeneration = nextGeneration(distanceMark, distanceGeneration);
+            search(to, distanceMark, distanceGeneration, distance);
+            target = to;
+            distanceVersion = version;
+        }
+        assert distanceMark[from] == distanceGeneration;
+        return distance[from];
+    }
+
+    /**
+     * Return a neighbour of the given cell that is one step closer to the
+     * target of the last call of {@link PlayerPaths#distance(int, int, long)}.
+     * The cell must be on the walk and not be the target.
+     */
+    int nextStep(int cell) {
+        assert distanceMark[cell] == distanceGeneration && distance[cell] > 0;
+        int closer = distance[cell] - 1;
+        int x = cell % width;
+        if (x > 0 && isCloser(cell - 1, closer)) {
+            return cell - 1;
+        }
+        if (x < width - 1 && isCloser(cell + 1, closer)) {
+            return cell + 1;
+        }
+        if (cell >= width && isCloser(cell - width, closer)) {
+            return cell - width;
+        }
+        assert cell + width < board.size() && isCloser(cell + width, closer);
+        return cell + width;
+    }
+
+    private boolean isCloser(int cell, int closer) {
+        return distanceMark[cell] == distanceGeneration && distance[cell] == closer;
+    }
+
+    /**
+     * Mark all cells reachable from start with the given generation and,
+     * if distances is not null, store their distance to start.
+     */
+    private void search(int start, int[] marks, int generation, int[] distances) {
+        int head = 0, tail = 0;
+        marks[start] = generation;
+        if (distances != null) {
+            distances[start] = 0;
+        }
+        queue[tail++] = start;
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell % width;
+            if (x > 0) {
+                tail = visit(cell, cell - 1, marks, generation, distances, tail);
+            }
+            if (x < width - 1) {
+                tail = visit(cell, cell + 1, marks, generation, distances, tail);
+            }
+            if (cell >= width) {
+                tail = visit(cell, cell - width, marks, generation, distances, tail);
+            }
+            if (cell + width < board.size()) {
+                tail = visit(cell, cell + width, marks, generation, distances, tail);
+            }
+        }
+    }
+
+    private int visit(int from, int cell, int[] marks, int generation, int[] distances, int tail) {
+        if (marks[cell] == generation || !isWalkable(cell)) {
+            return tail;
+        }
+        marks[cell] = generation;
+        if (distances != null) {
+            distances[cell] = distances[from] + 1;
+        }
+        queue[tail] = cell;
+        return tail + 1;
+    }
+
+    /**
+     * Return whether the player can stand on the given cell, ignoring the
+     * player itself.
+     */
+    private boolean isWalkable(int cell) {
+        if (!board.canBeOccupied(cell)) {
+            return false;
+        }
+        Entity entity = board.entityAt(cell);
+        return entity == null || entity instanceof PlayerEntity;
+    }
+
+    /**
+     * Return a generation that no cell is marked with yet.
+     */
+    private static int nextGeneration(int[] marks, int generation) {
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            return 1;
+        }
+        return generation + 1;
+    }
+}
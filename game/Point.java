@@ -4,7 +4,13 @@ package sokoban.game;
  * Representation of coordinates and vectors in a game.
  */
 public class Point {
-    private int x, y;
+    /** Unit vectors of the four directions. */
+    public static final Point UP = new Point(0, -1);
+    public static final Point DOWN = new Point(0, 1);
+    public static final Point LEFT = new Point(-1, 0);
+    public static final Point RIGHT = new Point(1, 0);
+
+    private final int x, y;
 
     public Point(int x, int y) {
         this.x = x;
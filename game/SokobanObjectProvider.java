@@ -5,16 +5,29 @@ import sokoban.io.input.StdinInputHandler;
 import sokoban.io.output.PlaintextRenderer;
 import sokoban.io.output.Renderer;
 
+/**
+ * Global source of the renderer and input handler of games that are not
+ * given their own (see {@link Game.GameBuilder#GameBuilder(int, int)}).
+ * Games running concurrently should be given their own instead, e.g. by a
+ * {@link sokoban.host.SessionHost}.
+ */
 public abstract class SokobanObjectProvider {
-    private static SokobanObjectProvider instance;
+    private static volatile SokobanObjectProvider instance;
 
     protected SokobanObjectProvider() {}
 
     public static SokobanObjectProvider instance() {
-        if (instance == null) {
-            instance = defaultInstance();
+        SokobanObjectProvider provider = instance;
+        if (provider == null) {
+            synchronized (SokobanObjectProvider.class) {
+                provider = instance;
+                if (provider == null) {
+                    provider = defaultInstance();
+                    instance = provider;
+                }
+            }
         }
-        return instance;
+        return provider;
     }
 
     public static SokobanObjectProvider defaultInstance() {
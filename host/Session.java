@@ -0,0 +1,182 @@
+package sokoban.host;
+
+import sokoban.game.Game;
+import sokoban.game.LevelTemplate;
+import sokoban.io.input.Action;
+import sokoban.io.input.LurdDecoder;
+import sokoban.io.input.QueuedInputHandler;
+import sokoban.io.output.Renderer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * A game hosted by a {@link SessionHost}, with its own input handler and
+ * renderer. The renderer writes to the session, which forwards to the
+ * response of the command being executed.
+ *
+ * Commands submitted to an executor are queued per session, so that at
+ * most one of them runs at a time and they run in submission order.
+ */
+class Session implements Appendable {
+    private final long id;
+    private final Game game;
+    private final QueuedInputHandler inputHandler = new QueuedInputHandler();
+    private final Renderer renderer;
+    private volatile long lastUsed;
+    private StringBuilder frame; // only set while rendering
+    // commands waiting for the executor; also the lock of the queue, which
+    // must not be the session itself so that enqueueing never waits for a
+    // running command
+    private final ArrayDeque<Runnable> pending = new ArrayDeque<>(1);
+    private boolean scheduled;
+
+    /**
+     * Start a game of the given level.
+     * @param renderers creates the renderer of the session from its output
+     */
+    Session(long id, LevelTemplate level, Function<Appendable, Renderer> renderers, int historyLimit,
+            boolean deadlockWarning) {
+        this.id = id;
+        this.renderer = renderers.apply(this);
+        Game.GameBuilder builder = level.newGameBuilder(renderer, inputHandler);
+        builder.setHistoryLimit(historyLimit);
+        builder.setDeadlockWarning(deadlockWarning);
+        this.game = builder.build();
+        this.lastUsed = System.nanoTime();
+    }
+
+    long getId() {
+        return id;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Run the given task with the given executor after all tasks enqueued
+     * before it have finished.
+     */
+    void enqueue(Runnable task, Executor executor) {
+        synchronized (pending) {
+            pending.add(task);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        executor.execute(() -> runNext(executor));
+    }
+
+    /**
+     * Run the oldest pending task and resubmit for the next one, so that
+     * sessions with many commands take turns with the others.
+     */
+    private void runNext(Executor executor) {
+        Runnable task;
+        synchronized (pending) {
+            task = pending.remove();
+        }
+        try {
+            task.run();
+        } finally {
+            boolean more;
+            synchronized (pending) {
+                more = scheduled = !pending.isEmpty();
+            }
+            if (more) {
+                executor.execute(() -> runNext(executor));
+            }
+        }
+    }
+
+    /**
+     * Queue and execute the actions of the given command, i.e. LURD moves
+     * or one of {@code undo} and {@code redo}, and append the frame showing
+     * the result to out.
+     * @return false if the command is invalid, in which case nothing is executed
+     */
+    synchronized boolean execute(String command, int maxActions, StringBuilder out) {
+        lastUsed = System.nanoTime();
+        if (!queue(command, maxActions)) {
+            return false;
+        }
+        while (!inputHandler.hasTerminated() && !game.isOver()) {
+            inputHandler.handleNextInputOn(game.getPlayer());
+        }
+        inputHandler.getActions().clear();
+        render(out);
+        return true;
+    }
+
+    private boolean queue(String command, int maxActions) {
+        if (command.equals("undo")) {
+            inputHandler.getActions().add(Action.UNDO);
+        } else if (command.equals("redo")) {
+            inputHandler.getActions().add(Action.REDO);
+        } else if (!command.isEmpty() && !LurdDecoder.decode(command, inputHandler.getActions())) {
+            return false;
+        }
+        if (inputHandler.getActions().size() > maxActions) {
+            inputHandler.getActions().clear();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Append a frame of the current state to out: a line {@code frame ID N}
+     * followed by the N lines drawn by the renderer.
+     */
+    synchronized void render(StringBuilder out) {
+        frame = new StringBuilder();
+        try {
+            if (game.isOver()) {
+                renderer.renderSuccess(game);
+            } else {
+                renderer.render(game);
+            }
+        } finally {
+            StringBuilder text = frame;
+            frame = null;
+            appendFrame(text, out);
+        }
+    }
+
+    private void appendFrame(StringBuilder text, StringBuilder out) {
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) == '\n') {
+            end--;
+        }
+        int lines = end == 0 ? 0 : 1;
+        for (int i = 0; i < end; i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        out.append("frame ").append(id).append(' ').append(lines).append('\n');
+        if (end > 0) {
+            out.append(text, 0, end).append('\n');
+        }
+    }
+
+    @Override
+    public Appendable append(CharSequence text) {
+        frame.append(text);
+        return this;
+    }
+
+    @Override
+    public Appendable append(CharSequence text, int start, int end) {
+        frame.append(text, start, end);
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) {
+        frame.append(c);
+        return this;
+    }
+}
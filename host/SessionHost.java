@@ -0,0 +1,352 @@
+package sokoban.host;
+
+import sokoban.game.LevelTemplate;
+import sokoban.io.output.PlaintextRenderer;
+import sokoban.io.output.Renderer;
+import sokoban.parser.PlaintextParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Hosts many concurrent game sessions, each with its own renderer and input
+ * handler, controlled by a simple line protocol.
+ *
+ * Sessions do not own threads: a command is executed either by the thread
+ * that hands it to {@link SessionHost#handle(String, StringBuilder)}, e.g.
+ * the loop reading a pipe in {@link SessionHost#serve(BufferedReader, Writer)},
+ * or by an executor shared by all sessions (see
+ * {@link SessionHost#submit(String, Executor, Consumer)}), as the
+ * {@link SocketServer} does. An idle session thus
+ * only takes the memory of its game, which is started from a shared
+ * {@link LevelTemplate} and keeps a short history. Sessions that receive
+ * no command for the idle timeout are evicted.
+ *
+ * Every request is one line; the response consists of one or more lines:
+ * <pre>
+ *     open LEVEL      starts a session, answered by "session ID" and a frame
+ *     ID MOVES        executes LURD moves, "undo" or "redo"; answered by a frame
+ *     ID              answered by a frame
+ *     close ID        ends a session, answered by "closed ID"
+ * </pre>
+ * A frame is a line {@code frame ID N} followed by the N lines drawn by the
+ * renderer of the session. Invalid requests are answered by a single line
+ * {@code error MESSAGE}.
+ */
+public class SessionHost {
+    public static final int DEFAULT_HISTORY_LIMIT = 32;
+    public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+    public static final int DEFAULT_MAX_ACTIONS = 100_000;
+
+    private final Map<String, LevelTemplate> levels = new ConcurrentHashMap<>();
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private volatile Function<Appendable, Renderer> renderers = PlaintextRenderer::new;
+    private volatile int historyLimit = DEFAULT_HISTORY_LIMIT;
+    private volatile boolean deadlockWarning;
+    private volatile long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_IDLE_TIMEOUT);
+    private volatile int maxActions = DEFAULT_MAX_ACTIONS;
+
+    /**
+     * Make the given level available under the given name, replacing any
+     * level of that name. Levels are only added by the host, never by
+     * clients, and are kept until they are removed, so the number of
+     * levels is not bounded by the host itself.
+     */
+    public void addLevel(String name, LevelTemplate level) {
+        assert name != null && level != null;
+        levels.put(name, level);
+    }
+
+    /**
+     * Make the level with the given name unavailable for new sessions;
+     * running sessions of it continue.
+     * @return whether there was such a level
+     */
+    public boolean removeLevel(String name) {
+        return levels.remove(name) != null;
+    }
+
+    /**
+     * Add all {@code NAME.level} files in the given directory as level NAME.
+     * @throws IOException if reading fails or a level is malformed
+     */
+    public void addLevels(Path directory) throws IOException {
+        PlaintextParser parser = new PlaintextParser();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".level")) {
+                    String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                    addLevel(name.substring(0, name.length() - ".level".length()),
+                            parser.makeTemplateFromText(text));
+                }
+            }
+        }
+    }
+
+    /**
+     * Set how the renderer of a session is created from the output it
+     * writes to; the default is a {@link PlaintextRenderer}.
+     * @param renderers must not be null
+     */
+    public void setRendererFactory(Function<Appendable, Renderer> renderers) {
+        assert renderers != null;
+        this.renderers = renderers;
+    }
+
+    /**
+     * Set the number of moves that can be undone in new sessions.
+     * @param limit must not be negative
+     */
+    public void setHistoryLimit(int limit) {
+        assert limit >= 0;
+        this.historyLimit = limit;
+    }
+
+    /**
+     * Set whether the games of new sessions warn about deadlocks (see
+     * {@link sokoban.game.Game.GameBuilder#setDeadlockWarning(boolean)});
+     * disabled by default to keep sessions small.
+     */
+    public void setDeadlockWarning(boolean enabled) {
+        this.deadlockWarning = enabled;
+    }
+
+    /**
+     * Set the time after which a session without commands is evicted.
+     * @param millis must be positive
+     */
+    public void setIdleTimeout(long millis) {
+        assert millis > 0;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public long getIdleTimeout() {
+        return TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos);
+    }
+
+    /**
+     * Set the maximal number of actions executed for one request, so a
+     * single request cannot hold up the thread executing it.
+     * @param max must be positive
+     */
+    public void setMaxActions(int max) {
+        assert max > 0;
+        this.maxActions = max;
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Execute the given request line and append the response to out.
+     * Can be called by several threads at once; commands for the same
+     * session are executed one after the other.
+     */
+    public void handle(String line, StringBuilder out) {
+        line = line.trim();
+        int separator = line.indexOf(' ');
+        String first = separator < 0 ? line : line.substring(0, separator);
+        String rest = separator < 0 ? "" : line.substring(separator + 1).trim();
+
+        if (first.equals("open")) {
+            open(rest, out);
+        } else if (first.equals("close")) {
+            close(rest, out);
+        } else {
+            Session session = sessionOf(first);
+            if (session == null) {
+                error(out, "unknown session " + first);
+            } else if (!session.execute(rest, maxActions, out)) {
+                error(out, "invalid command " + rest);
+            }
+        }
+    }
+
+    /**
+     * Execute the given request line with the given executor and pass the
+     * response to done, which is called by the executing thread. Commands
+     * for the same session are queued and executed one after the other in
+     * the order they were submitted, so a slow session only holds up its
+     * own commands.
+     */
+    public void submit(String line, Executor executor, Consumer<String> done) {
+        assert executor != null && done != null;
+        String trimmed = line.trim();
+        int separator = trimmed.indexOf(' ');
+        String first = separator < 0 ? trimmed : trimmed.substring(0, separator);
+        String rest = separator < 0 ? "" : trimmed.substring(separator + 1).trim();
+        StringBuilder out = new StringBuilder();
+
+        if (first.equals("open")) {
+            // create the session right away, so that the following requests
+            // can address it; only its first frame is rendered by the executor
+            Session session = newSession(rest);
+            if (session == null) {
+                error(out, "unknown level " + rest);
+                done.accept(out.toString());
+                return;
+            }
+            session.enqueue(() -> {
+                appendOpened(session, out);
+                done.accept(out.toString());
+            }, executor);
+            return;
+        }
+
+        String id = first.equals("close") ? rest : first;
+        Session session = sessionOf(id);
+        if (session == null) {
+            error(out, "unknown session " + id);
+            done.accept(out.toString());
+            return;
+        }
+        session.enqueue(() -> {
+            handle(trimmed, out);
+            done.accept(out.toString());
+        }, executor);
+    }
+
+    private void open(String name, StringBuilder out) {
+        Session session = newSession(name);
+        if (session == null) {
+            error(out, "unknown level " + name);
+            return;
+        }
+        appendOpened(session, out);
+    }
+
+    /**
+     * Start a session of the given level.
+     * @return the session, or null if the level is unknown
+     */
+    private Session newSession(String name) {
+        LevelTemplate level = levels.get(name);
+        if (level == null) {
+            return null;
+        }
+        Session session = new Session(nextId.getAndIncrement(), level, renderers, historyLimit, deadlockWarning);
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    private static void appendOpened(Session session, StringBuilder out) {
+        out.append("session ").append(session.getId()).append('\n');
+        session.render(out);
+    }
+
+    private void close(String id, StringBuilder out) {
+        Session session = sessionOf(id);
+        if (session == null || !sessions.remove(session.getId(), session)) {
+            error(out, "unknown session " + id);
+            return;
+        }
+        out.append("closed ").append(session.getId()).append('\n');
+    }
+
+    private Session sessionOf(String id) {
+        try {
+            return sessions.get(Long.parseLong(id));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void error(StringBuilder out, String message) {
+        out.append("error ").append(message).append('\n');
+    }
+
+    /**
+     * Remove all sessions that have not received a command for the idle timeout.
+     * @return the number of removed sessions
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        long timeout = idleTimeoutNanos;
+        int evicted = 0;
+        for (Session session : sessions.values()) {
+            if (now - session.getLastUsed() >= timeout && sessions.remove(session.getId(), session)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Execute the requests read from the given reader until it is exhausted
+     * and write the responses to the given writer, e.g. for a pipe.
+     */
+    public void serve(BufferedReader in, Writer out) throws IOException {
+        StringBuilder response = new StringBuilder();
+        long sweepInterval = idleTimeoutNanos / 4;
+        long nextSweep = System.nanoTime() + sweepInterval;
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (System.nanoTime() - nextSweep >= 0) {
+                evictIdle();
+                nextSweep = System.nanoTime() + sweepInterval;
+            }
+            response.setLength(0);
+            handle(line, response);
+            out.append(response);
+            out.flush();
+        }
+    }
+
+    /**
+     * Usage: {@code SessionHost [-port N] [-idle SECONDS] LEVEL_DIRECTORY}
+     *
+     * Serves the levels in the directory on the given port of the loopback
+     * interface, or on standard input and output if no port is given.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = -1;
+        long idleSeconds = -1;
+        Path directory = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-idle") && i + 1 < args.length) {
+                idleSeconds = Long.parseLong(args[++i]);
+            } else {
+                directory = Paths.get(args[i]);
+            }
+        }
+        if (directory == null) {
+            System.err.println("usage: SessionHost [-port N] [-idle SECONDS] LEVEL_DIRECTORY");
+            System.exit(2);
+        }
+
+        SessionHost host = new SessionHost();
+        host.addLevels(directory);
+        if (idleSeconds > 0) {
+            host.setIdleTimeout(TimeUnit.SECONDS.toMillis(idleSeconds));
+        }
+        if (port >= 0) {
+            try (SocketServer server = new SocketServer(host, port)) {
+                System.err.println("listening on port " + server.getPort());
+                server.run();
+            }
+        } else {
+            host.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                    new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package sokoban.host;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the line protocol of a {@link SessionHost} on a port of the
+ * loopback interface.
+ *
+ * A single event loop thread accepts connections, reads requests and writes
+ * responses with non-blocking I/O, so the number of connections and sessions
+ * is not limited by threads. The requests are executed by a thread pool (see
+ * {@link SessionHost#submit(String, java.util.concurrent.Executor, java.util.function.Consumer)}):
+ * commands of one session run one after the other, but a slow command does
+ * not hold up other sessions. Sessions are not tied to connections; any
+ * connection may send commands to any session, and every connection receives
+ * its responses in the order of its requests. The loop also evicts idle
+ * sessions.
+ */
+public class SocketServer implements Closeable {
+    private static final int MAX_LINE = 1 << 20;
+    // stop reading from clients that do not read their responses
+    private static final int MAX_PENDING_RESPONSES = 1024;
+
+    private final SessionHost host;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(1 << 16);
+    // connections with responses completed by the executor
+    private final Queue<SelectionKey> completed = new ConcurrentLinkedQueue<>();
+    private volatile boolean running;
+
+    /**
+     * Bind to the given port of the loopback interface and execute requests
+     * with a pool of one thread per processor.
+     * @param port port, or 0 for any free port
+     */
+    public SocketServer(SessionHost host, int port) throws IOException {
+        this(host, port, Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "session-worker");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * Bind to the given port of the loopback interface and execute requests
+     * with the given executor, which is not shut down by the server.
+     * @param port port, or 0 for any free port
+     */
+    public SocketServer(SessionHost host, int port, ExecutorService executor) throws IOException {
+        this(host, port, executor, false);
+    }
+
+    private SocketServer(SessionHost host, int port, ExecutorService executor, boolean ownsExecutor)
+            throws IOException {
+        assert host != null && executor != null;
+        this.host = host;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Run the event loop until the server is closed.
+     */
+    public void run() throws IOException {
+        running = true;
+        long sweepInterval = Math.max(1, host.getIdleTimeout() / 4);
+        long nextSweep = System.currentTimeMillis() + sweepInterval;
+        try {
+            while (server.isOpen()) {
+                selector.select(sweepInterval);
+                SelectionKey done;
+                while ((done = completed.poll()) != null) {
+                    if (done.isValid()) {
+                        try {
+                            write(done);
+                        } catch (IOException e) {
+                            done.cancel();
+                            done.channel().close();
+                        }
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        }
+                    } catch (IOException e) {
+                        key.cancel();
+                        key.channel().close();
+                    }
+                }
+                if (System.currentTimeMillis() >= nextSweep) {
+                    host.evictIdle();
+                    nextSweep = System.currentTimeMillis() + sweepInterval;
+                }
+            }
+        } finally {
+            running = false;
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+            if (ownsExecutor) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Connection());
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        readBuffer.clear();
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            key.cancel();
+            channel.close();
+            return;
+        }
+
+        byte[] bytes = readBuffer.array();
+        int start = 0;
+        for (int i = 0; i < read; i++) {
+            if (bytes[i] == '\n') {
+                connection.append(bytes, start, i);
+                handle(key, connection);
+                start = i + 1;
+            }
+        }
+        connection.append(bytes, start, read);
+        if (connection.lineLength > MAX_LINE) {
+            throw new IOException("line too long");
+        }
+        write(key);
+    }
+
+    /**
+     * Submit the request line of the connection and reserve the place of
+     * its response, which the executor fills in.
+     */
+    private void handle(SelectionKey key, Connection connection) {
+        String line = new String(connection.line, 0, connection.lineLength, StandardCharsets.UTF_8);
+        connection.lineLength = 0;
+        Response response = new Response();
+        connection.output.add(response);
+        host.submit(line, executor, text -> {
+            response.buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            completed.add(key);
+            selector.wakeup();
+        });
+    }
+
+    /**
+     * Write the completed responses at the head of the queue as far as
+     * possible, wait for the channel to become writable if some remain and
+     * stop reading while too many responses are pending.
+     */
+    private void write(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        while (!connection.output.isEmpty()) {
+            ByteBuffer buffer = connection.output.peek().buffer;
+            if (buffer == null) {
+                break; // still executing
+            }
+            channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                break;
+            }
+            connection.output.remove();
+        }
+        int ops = connection.output.size() < MAX_PENDING_RESPONSES ? SelectionKey.OP_READ : 0;
+        if (!connection.output.isEmpty() && connection.output.peek().buffer != null) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+
+    /**
+     * Stop accepting connections and end the event loop, which closes all
+     * connections. Can be called from any thread.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        if (running) {
+            selector.wakeup();
+        } else {
+            selector.close();
+            if (ownsExecutor) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Response to a request, set by the executor once it has been executed.
+     */
+    private static class Response {
+        private volatile ByteBuffer buffer;
+    }
+
+    /**
+     * State of a connection: the incomplete request line and the responses
+     * that have not been written yet, in the order of the requests.
+     */
+    private static class Connection {
+        private byte[] line = new byte[0];
+        private int lineLength;
+        private final ArrayDeque<Response> output = new ArrayDeque<>(2);
+
+        void append(byte[] bytes, int from, int to) {
+            int length = to - from;
+            if (length == 0) {
+                return;
+            }
+            if (lineLength + length > line.length) {
+                line = Arrays.copyOf(line, Math.max(Math.max(64, line.length * 2), lineLength + length));
+            }
+            System.arraycopy(bytes, from, line, lineLength, length);
+            lineLength += length;
+        }
+    }
+}
@@ -26,5 +26,17 @@ public enum Action implements PlayerMovement {
         public void execute(PlayerEntity player) {
             player.moveRight();
         }
+    },
+    UNDO {
+        @Override
+        public void execute(PlayerEntity player) {
+            player.undo();
+        }
+    },
+    REDO {
+        @Override
+        public void execute(PlayerEntity player) {
+            player.redo();
+        }
     }
 }
@@ -0,0 +1,119 @@
+package sokoban.io.input;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * First-in-first-out queue of actions stored as runs of equal actions, so
+ * long solutions and large repeat counts take little memory.
+ */
+public class ActionQueue {
+    private static final Action[] ACTIONS = Action.values();
+
+    private byte[] actions = new byte[16];
+    private int[] counts = new int[16];
+    private int head, size;
+    private long total;
+
+    /**
+     * Append the given action the given number of times.
+     * @param action must not be null
+     * @param count must not be negative
+     */
+    public void add(Action action, int count) {
+        assert action != null && count >= 0;
+        if (count == 0) {
+            return;
+        }
+        total += count;
+
+        if (size > 0) {
+            int last = (head + size - 1) & (actions.length - 1);
+            if (actions[last] == action.ordinal() && counts[last] <= Integer.MAX_VALUE - count) {
+                counts[last] += count;
+                return;
+            }
+        }
+        if (size == actions.length) {
+            grow();
+        }
+        int tail = (head + size) & (actions.length - 1);
+        actions[tail] = (byte) action.ordinal();
+        counts[tail] = count;
+        size++;
+    }
+
+    /**
+     * Append the given action once.
+     */
+    public void add(Action action) {
+        add(action, 1);
+    }
+
+    /**
+     * Remove and return the first action.
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public Action poll() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        Action action = ACTIONS[actions[head]];
+        total--;
+        if (--counts[head] == 0) {
+            head = (head + 1) & (actions.length - 1);
+            size--;
+        }
+        return action;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return the number of queued actions.
+     */
+    public long size() {
+        return total;
+    }
+
+    /**
+     * Remove all actions.
+     */
+    public void clear() {
+        head = size = 0;
+        total = 0;
+    }
+
+    /**
+     * Return the queued actions as an array without removing them.
+     * @throws IllegalStateException if there are too many actions for an array
+     */
+    public Action[] toArray() {
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("too many actions: " + total);
+        }
+        Action[] result = new Action[(int) total];
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            int run = (head + i) & (actions.length - 1);
+            Arrays.fill(result, position, position + counts[run], ACTIONS[actions[run]]);
+            position += counts[run];
+        }
+        return result;
+    }
+
+    private void grow() {
+        byte[] grownActions = new byte[actions.length * 2];
+        int[] grownCounts = new int[counts.length * 2];
+        for (int i = 0; i < size; i++) {
+            int run = (head + i) & (actions.length - 1);
+            grownActions[i] = actions[run];
+            grownCounts[i] = counts[run];
+        }
+        actions = grownActions;
+        counts = grownCounts;
+        head = 0;
+    }
+}
@@ -2,12 +2,15 @@ package sokoban.io.input;
 
 import sokoban.entity.PlayerEntity;
 
+import java.util.function.Consumer;
+
 /**
  * Input handlers are responsible for generating actions (i.e., movements in
  * any direction in {@link Action}) and instructing the player to execute the
  * command.
  */
 public abstract class InputHandler {
+    private Consumer<Action> listener;
 
     /**
      * Obtain next input and, if the input is valid, execute it (see {@link InputHandler#act}).
@@ -31,5 +34,17 @@ public abstract class InputHandler {
         assert player != null;
         assert action != null;
         action.execute(player);
+        if (listener != null) {
+            listener.accept(action);
+        }
+    }
+
+    /**
+     * Set a listener that is notified of every executed action, e.g. to
+     * record the session (see {@link sokoban.io.replay.ReplayWriter}).
+     * @param listener listener, or null to remove the current one
+     */
+    public void setActionListener(Consumer<Action> listener) {
+        this.listener = listener;
     }
 }
@@ -0,0 +1,101 @@
+package sokoban.io.input;
+
+import java.util.Arrays;
+
+/**
+ * Decodes moves in LURD notation, the usual notation for Sokoban solutions.
+ *
+ * Every move is one of the letters l, u, r and d; upper case letters (used
+ * for pushes) are accepted as well. A move may be preceded by a decimal
+ * repeat count, so {@code 12r} stands for twelve moves to the right.
+ * Spaces, tabs and carriage returns are ignored.
+ *
+ * Decoding looks up every byte in a table and appends runs of actions to an
+ * {@link ActionQueue}, so repeat counts are not expanded.
+ */
+public final class LurdDecoder {
+    private static final byte INVALID = -1, SKIP = -2, DIGIT = -3;
+    private static final byte[] TABLE = new byte[256];
+    private static final Action[] ACTIONS = Action.values();
+
+    static {
+        Arrays.fill(TABLE, INVALID);
+        TABLE['l'] = TABLE['L'] = (byte) Action.MOVE_LEFT.ordinal();
+        TABLE['u'] = TABLE['U'] = (byte) Action.MOVE_UP.ordinal();
+        TABLE['r'] = TABLE['R'] = (byte) Action.MOVE_RIGHT.ordinal();
+        TABLE['d'] = TABLE['D'] = (byte) Action.MOVE_DOWN.ordinal();
+        TABLE[' '] = TABLE['\t'] = TABLE['\r'] = SKIP;
+        for (char c = '0'; c <= '9'; c++) {
+            TABLE[c] = DIGIT;
+        }
+    }
+
+    private LurdDecoder() {}
+
+    /**
+     * Decode the bytes between the given indices and append the moves to
+     * the given queue. Nothing is appended if the input is not valid.
+     * @return whether the input is valid LURD
+     */
+    public static boolean decode(byte[] bytes, int from, int to, ActionQueue queue) {
+        assert bytes != null && queue != null && 0 <= from && from <= to && to <= bytes.length;
+        if (!isValid(bytes, from, to)) {
+            return false;
+        }
+
+        int count = -1;
+        for (int i = from; i < to; i++) {
+            byte code = TABLE[bytes[i] & 0xff];
+            if (code >= 0) {
+                queue.add(ACTIONS[code], count < 0 ? 1 : count);
+                count = -1;
+            } else if (code == DIGIT) {
+                count = Math.max(count, 0) * 10 + (bytes[i] - '0');
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode the given text (see {@link LurdDecoder#decode(byte[], int, int, ActionQueue)}).
+     */
+    public static boolean decode(CharSequence text, ActionQueue queue) {
+        byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            char c = text.charAt(i);
+            if (c > 0x7f) {
+                return false;
+            }
+            bytes[i] = (byte) c;
+        }
+        return decode(bytes, 0, bytes.length, queue);
+    }
+
+    /**
+     * Check that all bytes are known and every count is followed by a move
+     * and fits into an int.
+     */
+    private static boolean isValid(byte[] bytes, int from, int to) {
+        long count = 0;
+        boolean counting = false;
+        for (int i = from; i < to; i++) {
+            byte code = TABLE[bytes[i] & 0xff];
+            if (code == INVALID) {
+                return false;
+            } else if (code == DIGIT) {
+                count = count * 10 + (bytes[i] - '0');
+                counting = true;
+                if (count > Integer.MAX_VALUE) {
+                    return false;
+                }
+            } else if (code >= 0) {
+                count = 0;
+                counting = false;
+            } else if (counting) {
+                // counts must directly precede their move
+                return false;
+            }
+        }
+        return !counting;
+    }
+}
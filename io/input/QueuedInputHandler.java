@@ -0,0 +1,29 @@
+package sokoban.io.input;
+
+import sokoban.entity.PlayerEntity;
+
+/**
+ * Input handler whose actions are queued by its owner, e.g. as they arrive
+ * over a connection, instead of being read by the handler itself. Has
+ * terminated whenever the queue is empty.
+ */
+public class QueuedInputHandler extends InputHandler {
+    private final ActionQueue actions = new ActionQueue();
+
+    @Override
+    public void handleNextInputOn(PlayerEntity player) {
+        assert player != null;
+        act(player, actions.poll());
+    }
+
+    public boolean hasTerminated() {
+        return actions.isEmpty();
+    }
+
+    /**
+     * Return the queue of actions that have not been handled yet.
+     */
+    public ActionQueue getActions() {
+        return actions;
+    }
+}
@@ -2,8 +2,8 @@ package sokoban.io.input;
 
 import sokoban.entity.PlayerEntity;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.Queue;
 
 /**
@@ -17,7 +17,7 @@ public class ScriptedInputHandler extends InputHandler {
     private Queue<Action> actions;
 
     public ScriptedInputHandler(Action... actions) {
-        this.actions = new LinkedList<>();
+        this.actions = new ArrayDeque<>(actions.length);
         this.actions.addAll(Arrays.asList(actions));
     }
 
@@ -31,4 +31,11 @@ public class ScriptedInputHandler extends InputHandler {
     public boolean hasTerminated() {
         return actions.isEmpty();
     }
+
+    /**
+     * Return the number of actions that have not been handled yet.
+     */
+    public int remaining() {
+        return actions.size();
+    }
 }
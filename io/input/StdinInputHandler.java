@@ -1,51 +1,123 @@
 package sokoban.io.input;
 
 import sokoban.entity.PlayerEntity;
-import sokoban.game.Game;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.Queue;
+import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * Input handler that generates actions read from standard input.
+ *
+ * Every line is either one of the commands {@code undo} and {@code redo} or
+ * a sequence of moves in LURD notation (see {@link LurdDecoder}), such as
+ * {@code r}, {@code lluR} or {@code 12r}. A line with several moves queues
+ * all of them, and the following calls execute them one by one before the
+ * next line is read. Invalid lines are ignored.
+ *
+ * Input is read as bytes in large blocks and decoded without creating
+ * strings, so long solutions can be piped in quickly.
  */
 public class StdinInputHandler extends InputHandler {
-    private final BufferedReader reader;
-    private boolean terminated;
+    private static final byte[] UNDO = {'u', 'n', 'd', 'o'};
+    private static final byte[] REDO = {'r', 'e', 'd', 'o'};
 
-    private Queue<Action> actions;
+    private final InputStream in;
+    private final byte[] buffer = new byte[1 << 16];
+    private int position, limit;
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private boolean endOfInput;
+
+    private final ActionQueue actions = new ActionQueue();
 
     public StdinInputHandler() {
-        reader = new BufferedReader(new InputStreamReader(System.in));
+        this(System.in);
+    }
+
+    /**
+     * Create an input handler reading from the given stream instead of
+     * standard input.
+     */
+    public StdinInputHandler(InputStream in) {
+        assert in != null;
+        this.in = in;
     }
 
     @Override
     public void handleNextInputOn(PlayerEntity player) {
-        String line;
-        Action action = null;
-        try {
-            line = reader.readLine();
-            if (line.matches("^u$")) {
-                action = Action.MOVE_UP;
-            } else if (line.matches("^d$")) {
-                action = Action.MOVE_DOWN;
-            } else if (line.matches("^l")) {
-                action = Action.MOVE_LEFT;
-            } else if (line.matches("^r")) {
-                action = Action.MOVE_RIGHT;
+        while (actions.isEmpty() && !endOfInput) {
+            try {
+                if (readLine()) {
+                    decodeLine();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                endOfInput = true;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
 
-        if (action != null) {
-            act(player, action);
+        if (!actions.isEmpty()) {
+            act(player, actions.poll());
         }
     }
 
     public boolean hasTerminated() {
-        return terminated;
+        return endOfInput && actions.isEmpty();
+    }
+
+    /**
+     * Queue the actions of the current line, if it is valid.
+     */
+    private void decodeLine() {
+        int end = lineLength;
+        while (end > 0 && line[end - 1] == '\r') {
+            end--;
+        }
+        if (Arrays.equals(line, 0, end, UNDO, 0, UNDO.length)) {
+            actions.add(Action.UNDO);
+        } else if (Arrays.equals(line, 0, end, REDO, 0, REDO.length)) {
+            actions.add(Action.REDO);
+        } else {
+            LurdDecoder.decode(line, 0, end, actions);
+        }
+    }
+
+    /**
+     * Read the next line (without line break) into {@link StdinInputHandler#line}.
+     * @return false if the input has ended
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        while (true) {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    endOfInput = true;
+                    return lineLength > 0;
+                }
+            }
+
+            int start = position;
+            while (position < limit && buffer[position] != '\n') {
+                position++;
+            }
+            append(start, position);
+            if (position < limit) {
+                position++;
+                return true;
+            }
+        }
+    }
+
+    private void append(int from, int to) {
+        int length = to - from;
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(buffer, from, line, lineLength, length);
+        lineLength += length;
     }
 }
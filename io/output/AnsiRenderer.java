@@ -0,0 +1,213 @@
+package sokoban.io.output;
+
+import sokoban.entity.BoxEntity;
+import sokoban.entity.BreakableWallEntity;
+import sokoban.entity.Entity;
+import sokoban.entity.ExplosiveEntity;
+import sokoban.entity.GenericEntity;
+import sokoban.entity.PlayerEntity;
+import sokoban.game.Board;
+import sokoban.game.Game;
+import sokoban.tile.FloorTile;
+import sokoban.tile.GoalTile;
+import sokoban.tile.WallTile;
+
+import java.io.PrintStream;
+
+/**
+ * Renderer for ANSI terminals that draws the board with the same characters
+ * as the {@link PlaintextRenderer}, but only redraws what has changed.
+ *
+ * The first frame clears the screen and draws the whole board. Afterwards,
+ * the renderer only looks at the cells the game reports as changed (see
+ * {@link Game#changedCell(long)}) and moves the cursor to each of them that
+ * looks different to redraw it, so both the work and the output per move
+ * are proportional to the number of changed cells rather than the board
+ * area. Only if the renderer has missed too many changes does it compare
+ * the whole board. The status line below the board is only rewritten when
+ * it changes.
+ */
+public class AnsiRenderer implements Renderer {
+    private static final String ESC = "\u001b[";
+    private static final String DEADLOCK_MESSAGE = "The last push made the level unsolvable, undo it to continue.";
+
+    private final PrintStream out;
+    private final StringBuilder buffer = new StringBuilder();
+    private Game game;
+    private char[] frame;
+    private long drawnChanges; // change count of the game when the frame was drawn
+    private int lastDrawn; // cell whose character was written last, see drawCell
+    private String status;
+    private char cell;
+
+    public AnsiRenderer() {
+        this(System.out);
+    }
+
+    /**
+     * @param out stream the frames are written to, must not be null
+     */
+    public AnsiRenderer(PrintStream out) {
+        assert out != null;
+        this.out = out;
+    }
+
+    @Override
+    public void render(Game game) {
+        drawBoard(game);
+        drawStatus(game.isDeadlocked() ? DEADLOCK_MESSAGE : "");
+        flush();
+    }
+
+    @Override
+    public void renderSuccess(Game game) {
+        drawBoard(game);
+        drawStatus("Success!");
+        flush();
+    }
+
+    @Override
+    public void renderFailure(Game game) {
+        drawBoard(game);
+        drawStatus("Failure!");
+        flush();
+    }
+
+    /**
+     * Forget the previous frame, so the next frame redraws the whole screen.
+     */
+    public void invalidate() {
+        game = null;
+        frame = null;
+        status = null;
+    }
+
+    /**
+     * Draw the cells that changed since the previous frame, or the whole
+     * board if there is no previous frame of the given game.
+     */
+    private void drawBoard(Game game) {
+        Board board = game.getBoard();
+        long changes = game.getChangeCount();
+        boolean redraw = game != this.game || frame == null || frame.length != board.size();
+        if (redraw) {
+            this.game = game;
+            frame = new char[board.size()];
+            status = null;
+            buffer.append(ESC).append("2J");
+        }
+
+        lastDrawn = -2;
+        if (redraw || changes - drawnChanges > Game.CHANGE_LOG_SIZE) {
+            for (int i = 0; i < frame.length; i++) {
+                drawCell(board, i);
+            }
+        } else {
+            for (long change = drawnChanges; change < changes; change++) {
+                drawCell(board, game.changedCell(change));
+            }
+        }
+        drawnChanges = changes;
+    }
+
+    /**
+     * Redraw the cell with the given index if it differs from the frame.
+     */
+    private void drawCell(Board board, int index) {
+        char c = charAt(board, index);
+        if (c == frame[index]) {
+            return;
+        }
+        frame[index] = c;
+        int width = board.getWidth();
+        if (index != lastDrawn + 1 || index % width == 0) {
+            moveCursor(index / width + 1, index % width + 1);
+        }
+        buffer.append(c);
+        lastDrawn = index;
+    }
+
+    /**
+     * Show the given text in the line below the board if it differs from
+     * the text shown there.
+     */
+    private void drawStatus(String text) {
+        if (!text.equals(status)) {
+            status = text;
+            moveCursor(game.getHeight() + 1, 1);
+            buffer.append(ESC).append("2K").append(text);
+        }
+        moveCursor(game.getHeight() + 2, 1);
+    }
+
+    private void moveCursor(int row, int column) {
+        buffer.append(ESC).append(row).append(';').append(column).append('H');
+    }
+
+    private void flush() {
+        out.append(buffer);
+        out.flush();
+        buffer.setLength(0);
+    }
+
+    private char charAt(Board board, int index) {
+        Entity entity = board.entityAt(index);
+        if (entity != null) {
+            entity.accept(this);
+            return cell;
+        }
+        switch (board.cellAt(index)) {
+            case Board.WALL:
+                return '#';
+            case Board.GOAL:
+                return 'G';
+            default:
+                return '.';
+        }
+    }
+
+    @Override
+    public void visitGame(Game game) {
+        render(game);
+    }
+
+    @Override
+    public void visitBoxEntity(BoxEntity boxEntity) {
+        cell = 'B';
+    }
+
+    @Override
+    public void visitPlayerEntity(PlayerEntity playerEntity) {
+        cell = 'P';
+    }
+
+    @Override
+    public void visitExplosiveEntity(ExplosiveEntity explosiveEntity) {
+        cell = 'O';
+    }
+
+    @Override
+    public void visitBreakableWallEntity(BreakableWallEntity breakableWallEntity) {
+        cell = 'X';
+    }
+
+    @Override
+    public void visitGenericEntity(GenericEntity genericEntity) {
+        cell = genericEntity.getSymbol();
+    }
+
+    @Override
+    public void visitFloorTile(FloorTile floorTile) {
+        cell = '.';
+    }
+
+    @Override
+    public void visitGoalTile(GoalTile goalTile) {
+        cell = 'G';
+    }
+
+    @Override
+    public void visitWallTile(WallTile wallTile) {
+        cell = '#';
+    }
+}
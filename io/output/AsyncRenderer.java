@@ -0,0 +1,214 @@
+package sokoban.io.output;
+
+import sokoban.entity.BoxEntity;
+import sokoban.entity.BreakableWallEntity;
+import sokoban.entity.ExplosiveEntity;
+import sokoban.entity.GenericEntity;
+import sokoban.entity.PlayerEntity;
+import sokoban.game.Game;
+import sokoban.tile.FloorTile;
+import sokoban.tile.GoalTile;
+import sokoban.tile.WallTile;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renderer that hands frames to another renderer on a dedicated thread, so
+ * a slow console does not hold up the game.
+ *
+ * {@link AsyncRenderer#render(Game)} only requests a frame and returns
+ * immediately. The render thread draws at most one frame per frame
+ * interval; requests arriving in the meantime are coalesced into one frame
+ * showing the latest state. The success and failure frames are never
+ * dropped: {@link AsyncRenderer#renderSuccess(Game)} and
+ * {@link AsyncRenderer#renderFailure(Game)} wait until they have been drawn.
+ *
+ * The render thread reads the game while synchronized on it, which is also
+ * what the mutating methods of {@link Game} do, so it always sees the state
+ * between two moves. The thread is started on demand and ends after a
+ * success or failure frame.
+ */
+public class AsyncRenderer implements Renderer {
+    private static final int FRAME = 0, SUCCESS = 1, FAILURE = 2;
+
+    private final Renderer delegate;
+    private final long frameNanos;
+    private final Object monitor = new Object();
+
+    // guarded by monitor
+    private Game pending;
+    private int pendingKind;
+    private long requested, rendered;
+    private Thread thread;
+
+    // only used by the render thread
+    private long lastFrame;
+
+    /**
+     * @param delegate renderer drawing the frames, must not be null
+     * @param maxFrameRate maximal number of frames per second, must be positive
+     */
+    public AsyncRenderer(Renderer delegate, int maxFrameRate) {
+        assert delegate != null && maxFrameRate > 0;
+        this.delegate = delegate;
+        this.frameNanos = TimeUnit.SECONDS.toNanos(1) / maxFrameRate;
+    }
+
+    @Override
+    public void render(Game game) {
+        request(game, FRAME);
+    }
+
+    @Override
+    public void renderSuccess(Game game) {
+        awaitRendered(request(game, SUCCESS));
+    }
+
+    @Override
+    public void renderFailure(Game game) {
+        awaitRendered(request(game, FAILURE));
+    }
+
+    /**
+     * Replace the pending frame by the given one and wake the render thread.
+     * @return the number of the request
+     */
+    private long request(Game game, int kind) {
+        assert game != null;
+        synchronized (monitor) {
+            pending = game;
+            pendingKind = kind;
+            requested++;
+            if (thread == null) {
+                thread = new Thread(this::renderLoop, "renderer");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            monitor.notifyAll();
+            return requested;
+        }
+    }
+
+    private void awaitRendered(long request) {
+        synchronized (monitor) {
+            boolean interrupted = false;
+            while (rendered < request) {
+                try {
+                    monitor.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void renderLoop() {
+        while (true) {
+            boolean coalesce;
+            synchronized (monitor) {
+                while (rendered == requested) {
+                    try {
+                        monitor.wait();
+                    } catch (InterruptedException e) {
+                        // keep rendering, callers may be waiting for a final frame
+                    }
+                }
+                coalesce = pendingKind == FRAME;
+            }
+
+            // let further moves arrive until the frame interval has passed
+            long delay = lastFrame + frameNanos - System.nanoTime();
+            if (coalesce && delay > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                } catch (InterruptedException e) {
+                    // render right away
+                }
+            }
+
+            Game game;
+            int kind;
+            long request;
+            synchronized (monitor) {
+                game = pending;
+                kind = pendingKind;
+                request = requested;
+            }
+
+            try {
+                synchronized (game) {
+                    switch (kind) {
+                        case SUCCESS:
+                            delegate.renderSuccess(game);
+                            break;
+                        case FAILURE:
+                            delegate.renderFailure(game);
+                            break;
+                        default:
+                            delegate.render(game);
+                    }
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            lastFrame = System.nanoTime();
+
+            synchronized (monitor) {
+                rendered = request;
+                monitor.notifyAll();
+                if (kind != FRAME && rendered == requested) {
+                    thread = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void visitGame(Game game) {
+        delegate.visitGame(game);
+    }
+
+    @Override
+    public void visitBoxEntity(BoxEntity boxEntity) {
+        delegate.visitBoxEntity(boxEntity);
+    }
+
+    @Override
+    public void visitPlayerEntity(PlayerEntity playerEntity) {
+        delegate.visitPlayerEntity(playerEntity);
+    }
+
+    @Override
+    public void visitExplosiveEntity(ExplosiveEntity explosiveEntity) {
+        delegate.visitExplosiveEntity(explosiveEntity);
+    }
+
+    @Override
+    public void visitBreakableWallEntity(BreakableWallEntity breakableWallEntity) {
+        delegate.visitBreakableWallEntity(breakableWallEntity);
+    }
+
+    @Override
+    public void visitGenericEntity(GenericEntity genericEntity) {
+        delegate.visitGenericEntity(genericEntity);
+    }
+
+    @Override
+    public void visitFloorTile(FloorTile floorTile) {
+        delegate.visitFloorTile(floorTile);
+    }
+
+    @Override
+    public void visitGoalTile(GoalTile goalTile) {
+        delegate.visitGoalTile(goalTile);
+    }
+
+    @Override
+    public void visitWallTile(WallTile wallTile) {
+        delegate.visitWallTile(wallTile);
+    }
+}
@@ -3,6 +3,7 @@ package sokoban.io.output;
 import sokoban.entity.BoxEntity;
 import sokoban.entity.BreakableWallEntity;
 import sokoban.entity.ExplosiveEntity;
+import sokoban.entity.GenericEntity;
 import sokoban.entity.PlayerEntity;
 import sokoban.game.Game;
 import sokoban.tile.FloorTile;
@@ -60,6 +61,11 @@ public class NullRenderer implements Renderer {
 
     }
 
+    @Override
+    public void visitGenericEntity(GenericEntity genericEntity) {
+
+    }
+
     @Override
     public void visitWallTile(WallTile wallTile) {
 
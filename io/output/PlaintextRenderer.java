@@ -3,6 +3,7 @@ package sokoban.io.output;
 import sokoban.entity.BoxEntity;
 import sokoban.entity.BreakableWallEntity;
 import sokoban.entity.ExplosiveEntity;
+import sokoban.entity.GenericEntity;
 import sokoban.entity.PlayerEntity;
 import sokoban.game.Game;
 import sokoban.game.Point;
@@ -10,30 +11,58 @@ import sokoban.tile.FloorTile;
 import sokoban.tile.GoalTile;
 import sokoban.tile.WallTile;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
- * The plaintext renderer prints the game state to standard output and formats
- * it using ASCII graphics similar to level input files.
+ * The plaintext renderer prints the game state to standard output (or
+ * another target) and formats it using ASCII graphics similar to level
+ * input files.
  */
 public class PlaintextRenderer implements Renderer {
+    private final Appendable target;
     StringBuilder out;
 
+    public PlaintextRenderer() {
+        this(System.out);
+    }
+
+    /**
+     * @param target where the frames are written to, must not be null
+     */
+    public PlaintextRenderer(Appendable target) {
+        assert target != null;
+        this.target = target;
+    }
+
     @Override
     public void render(Game game) {
         out = new StringBuilder();
         visitGame(game);
-        System.out.println(out.toString());
+        if (game.isDeadlocked()) {
+            out.append("The last push made the level unsolvable, undo it to continue.\n");
+        }
+        println(out);
     }
 
     @Override
     public void renderSuccess(Game game) {
         render(game);
-        System.out.println("Success!");
+        println("Success!");
     }
 
     @Override
     public void renderFailure(Game game) {
         render(game);
-        System.out.println("Failure!");
+        println("Failure!");
+    }
+
+    private void println(CharSequence text) {
+        try {
+            target.append(text).append('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @Override
@@ -87,6 +116,11 @@ public class PlaintextRenderer implements Renderer {
         out.append('X');
     }
 
+    @Override
+    public void visitGenericEntity(GenericEntity genericEntity) {
+        out.append(genericEntity.getSymbol());
+    }
+
     @Override
     public void visitWallTile(WallTile wallTile) {
         out.append('#');
@@ -0,0 +1,49 @@
+package sokoban.io.replay;
+
+import sokoban.game.Game;
+import sokoban.io.input.Action;
+
+/**
+ * Constants of the binary replay format.
+ *
+ * A replay starts with a header:
+ * <pre>
+ *     int   magic ("SKRP")
+ *     byte  version
+ *     long  level hash (see {@link ReplayFormat#levelHash(Game)})
+ *     long  number of actions
+ * </pre>
+ * followed by segments of moves. A segment is a varint with the number of
+ * moves and the moves packed into 2 bits each, four per byte starting with
+ * the lowest bits. Every segment is followed by a control byte: {@code END}
+ * ends the replay, {@code UNDO} and {@code REDO} stand for the respective
+ * action and are followed by another segment. A session without undo and
+ * redo is therefore a single segment with 2 bits per move.
+ */
+public final class ReplayFormat {
+    static final int MAGIC = 0x534b5250; // "SKRP"
+    static final int VERSION = 1;
+
+    static final int END = 0, UNDO = 1, REDO = 2;
+
+    /** Moves indexed by their 2 bit code; the code is the ordinal of the action. */
+    static final Action[] MOVES = {Action.MOVE_UP, Action.MOVE_DOWN, Action.MOVE_LEFT, Action.MOVE_RIGHT};
+
+    private ReplayFormat() {}
+
+    /**
+     * Return whether the given action is a move, i.e. can be stored in 2 bits.
+     */
+    static boolean isMove(Action action) {
+        return action.ordinal() < MOVES.length;
+    }
+
+    /**
+     * Return a hash of the current state of the given game, covering the
+     * size, the tiles and the positions of all entities. Replays store the
+     * hash of the initial state to detect being replayed on another level.
+     */
+    public static long levelHash(Game game) {
+        return game.getBoard().layoutHash() ^ game.getZobristHash();
+    }
+}
@@ -0,0 +1,178 @@
+package sokoban.io.replay;
+
+import sokoban.entity.PlayerEntity;
+import sokoban.game.Game;
+import sokoban.io.input.Action;
+import sokoban.io.input.InputHandler;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Input handler that reads the actions of a binary replay (see
+ * {@link ReplayFormat}) from a stream while they are executed, so replays
+ * of any length are never held in memory.
+ *
+ * The handler can drive {@link Game#run()} like any other input handler
+ * (usually with a {@link sokoban.io.output.NullRenderer}), or execute the
+ * whole replay directly with {@link ReplayInputHandler#replay(Game)}.
+ * Errors while reading are thrown as {@link UncheckedIOException}.
+ */
+public class ReplayInputHandler extends InputHandler {
+    private final InputStream in;
+    private final byte[] buffer = new byte[1 << 16];
+    private int position, limit;
+
+    private final long levelHash;
+    private final long actionCount;
+    private long segmentMoves;
+    private int packed, packedMoves;
+    private Action next;
+    private boolean ended;
+
+    /**
+     * Read the header of the replay in the given stream.
+     * @throws IOException if the stream does not contain a replay
+     */
+    public ReplayInputHandler(InputStream in) throws IOException {
+        assert in != null;
+        this.in = in;
+        if (readInt() != ReplayFormat.MAGIC || readByte() != ReplayFormat.VERSION) {
+            throw new IOException("not a replay");
+        }
+        this.levelHash = readLong();
+        this.actionCount = readLong();
+        this.segmentMoves = readVarint();
+    }
+
+    /**
+     * Return the hash of the level the replay was recorded on.
+     */
+    public long getLevelHash() {
+        return levelHash;
+    }
+
+    /**
+     * Return the number of actions in the replay.
+     */
+    public long getActionCount() {
+        return actionCount;
+    }
+
+    @Override
+    public void handleNextInputOn(PlayerEntity player) {
+        Action action = nextAction();
+        if (action != null) {
+            act(player, action);
+        }
+    }
+
+    @Override
+    public boolean hasTerminated() {
+        if (next == null && !ended) {
+            next = readAction();
+        }
+        return next == null;
+    }
+
+    /**
+     * Execute all remaining actions on the given game, which must be in the
+     * state the replay was recorded from, without rendering and without
+     * stopping when the level is solved.
+     * @return the number of executed actions
+     * @throws IOException if the replay belongs to another level or is damaged
+     */
+    public long replay(Game game) throws IOException {
+        if (ReplayFormat.levelHash(game) != levelHash) {
+            throw new IOException("replay was recorded on another level");
+        }
+        PlayerEntity player = game.getPlayer();
+        long count = 0;
+        try {
+            for (Action action = nextAction(); action != null; action = nextAction()) {
+                act(player, action);
+                count++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count;
+    }
+
+    private Action nextAction() {
+        Action action = next != null ? next : ended ? null : readAction();
+        next = null;
+        return action;
+    }
+
+    private Action readAction() {
+        try {
+            if (segmentMoves > 0) {
+                if (packedMoves == 0) {
+                    packed = readByte();
+                    packedMoves = 4;
+                }
+                Action move = ReplayFormat.MOVES[packed & 3];
+                packed >>>= 2;
+                packedMoves--;
+                segmentMoves--;
+                return move;
+            }
+
+            packedMoves = 0;
+            switch (readByte()) {
+                case ReplayFormat.END:
+                    ended = true;
+                    return null;
+                case ReplayFormat.UNDO:
+                    segmentMoves = readVarint();
+                    return Action.UNDO;
+                case ReplayFormat.REDO:
+                    segmentMoves = readVarint();
+                    return Action.REDO;
+                default:
+                    throw new IOException("invalid control byte");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int readByte() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                throw new EOFException("replay is truncated");
+            }
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    private int readInt() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = value << 8 | readByte();
+        }
+        return value;
+    }
+
+    private long readLong() throws IOException {
+        return (long) readInt() << 32 | (readInt() & 0xffffffffL);
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("invalid segment length");
+    }
+}
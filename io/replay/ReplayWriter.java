@@ -0,0 +1,121 @@
+package sokoban.io.replay;
+
+import sokoban.game.Game;
+import sokoban.io.input.Action;
+import sokoban.io.input.InputHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Records actions in the binary replay format (see {@link ReplayFormat}).
+ *
+ * The header contains the number of actions, so the replay is kept in
+ * memory (2 bits per move) and written when the writer is closed. To
+ * record a live session, create the writer before the first move and pass
+ * {@link ReplayWriter#record(Action)} to
+ * {@link InputHandler#setActionListener(java.util.function.Consumer)}.
+ */
+public class ReplayWriter implements Closeable {
+    private final OutputStream out;
+    private final long levelHash;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private byte[] moves = new byte[64];
+    private long segmentMoves;
+    private long actionCount;
+    private boolean closed;
+
+    /**
+     * @param out stream the replay is written to on {@link ReplayWriter#close()}
+     * @param game game in its initial state
+     */
+    public ReplayWriter(OutputStream out, Game game) {
+        this(out, ReplayFormat.levelHash(game));
+    }
+
+    /**
+     * @param out stream the replay is written to on {@link ReplayWriter#close()}
+     * @param levelHash hash of the initial state (see {@link ReplayFormat#levelHash(Game)})
+     */
+    public ReplayWriter(OutputStream out, long levelHash) {
+        assert out != null;
+        this.out = out;
+        this.levelHash = levelHash;
+    }
+
+    /**
+     * Start recording the actions executed by the given input handler.
+     */
+    public void recordFrom(InputHandler inputHandler) {
+        inputHandler.setActionListener(this::record);
+    }
+
+    /**
+     * Append the given action.
+     */
+    public void record(Action action) {
+        assert action != null && !closed;
+        actionCount++;
+
+        if (ReplayFormat.isMove(action)) {
+            int index = (int) (segmentMoves >>> 2);
+            if (index == moves.length) {
+                moves = Arrays.copyOf(moves, moves.length * 2);
+            }
+            moves[index] |= action.ordinal() << ((segmentMoves & 3) * 2);
+            segmentMoves++;
+        } else {
+            endSegment(action == Action.UNDO ? ReplayFormat.UNDO : ReplayFormat.REDO);
+        }
+    }
+
+    /**
+     * Return the number of recorded actions.
+     */
+    public long getActionCount() {
+        return actionCount;
+    }
+
+    /**
+     * Write the replay and close the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        endSegment(ReplayFormat.END);
+        closed = true;
+
+        try (DataOutputStream data = new DataOutputStream(out)) {
+            data.writeInt(ReplayFormat.MAGIC);
+            data.writeByte(ReplayFormat.VERSION);
+            data.writeLong(levelHash);
+            data.writeLong(actionCount);
+            body.writeTo(data);
+        }
+    }
+
+    /**
+     * Move the current segment to the body, followed by the given control byte.
+     */
+    private void endSegment(int control) {
+        long count = segmentMoves;
+        while ((count & ~0x7fL) != 0) {
+            body.write((int) (count & 0x7f) | 0x80);
+            count >>>= 7;
+        }
+        body.write((int) count);
+
+        int bytes = (int) ((segmentMoves + 3) >>> 2);
+        body.write(moves, 0, bytes);
+        Arrays.fill(moves, 0, bytes, (byte) 0);
+        segmentMoves = 0;
+
+        body.write(control);
+    }
+}
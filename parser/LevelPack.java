@@ -0,0 +1,268 @@
+package sokoban.parser;
+
+import sokoban.game.Game;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Random access to the levels of a pack file in the format read by
+ * {@link PlaintextParser#makeGamesFromReader(java.io.Reader)}.
+ *
+ * The pack is memory-mapped and scanned once for the offsets at which the
+ * levels start. The offsets are stored in an index file next to the pack
+ * ({@code <pack>.idx}) and reused as long as size and modification time of
+ * the pack are unchanged, so later openings do not touch the pack at all.
+ * Fetching a level only reads and parses the bytes of that level.
+ *
+ * A pack is not thread-safe.
+ */
+public class LevelPack implements Closeable {
+    private static final int INDEX_MAGIC = 0x534b4958; // "SKIX"
+    private static final int INDEX_VERSION = 1;
+    /** Magic, version, pack length, pack modification time and level count. */
+    private static final int INDEX_HEADER_BYTES = 4 + 4 + 8 + 8 + 4;
+    /** Files are mapped in segments, since a single mapping is limited to 2 GB. */
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long length;
+    private final long[] offsets;
+    private final PlaintextParser parser;
+
+    /**
+     * @param offsets offsets of the levels, or null to scan the pack for them
+     */
+    private LevelPack(FileChannel channel, MappedByteBuffer[] segments, long length, long[] offsets,
+                      PlaintextParser parser) throws IOException {
+        this.channel = channel;
+        this.segments = segments;
+        this.length = length;
+        this.parser = parser;
+        this.offsets = offsets != null ? offsets : scan();
+    }
+
+    /**
+     * Open the given pack, creating games with a default {@link PlaintextParser}.
+     */
+    public static LevelPack open(Path pack) throws IOException {
+        return open(pack, new PlaintextParser());
+    }
+
+    /**
+     * Open the given pack, creating games with the given parser. The index
+     * is read from the index file if it is up to date, and otherwise built
+     * and written to it; failing to write the index is not an error.
+     * @throws IOException if the pack can not be read or is malformed
+     */
+    public static LevelPack open(Path pack, PlaintextParser parser) throws IOException {
+        assert pack != null && parser != null;
+
+        FileChannel channel = FileChannel.open(pack, StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(length - position, 1L << SEGMENT_BITS));
+            }
+
+            Path indexFile = indexFileOf(pack);
+            long modified = Files.getLastModifiedTime(pack).toMillis();
+            long[] offsets = readIndex(indexFile, length, modified);
+            LevelPack levelPack = new LevelPack(channel, segments, length, offsets, parser);
+            if (offsets == null) {
+                writeIndex(indexFile, length, modified, levelPack.offsets);
+            }
+            return levelPack;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Return the number of levels in the pack.
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Return the text of the level with the given index (starting at 0).
+     */
+    public String getLevelText(int index) {
+        assert index >= 0 && index < offsets.length;
+
+        long start = offsets[index];
+        long end = index + 1 < offsets.length ? offsets[index + 1] : length;
+        assert end - start <= Integer.MAX_VALUE;
+        byte[] bytes = new byte[(int) (end - start)];
+        for (int read = 0; read < bytes.length; ) {
+            long position = start + read;
+            MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)];
+            int from = (int) (position & SEGMENT_MASK);
+            int count = Math.min(bytes.length - read, segment.limit() - from);
+            segment.get(from, bytes, read, count);
+            read += count;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse the level with the given index (starting at 0).
+     * @throws IOException if the level is malformed
+     */
+    public Game getGame(int index) throws IOException {
+        return parser.readGame(new BufferedReader(new StringReader(getLevelText(index))));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Return the index file belonging to the given pack.
+     */
+    public static Path indexFileOf(Path pack) {
+        return pack.resolveSibling(pack.getFileName() + ".idx");
+    }
+
+    /**
+     * Find the start of every level: skip empty lines, read the header and
+     * skip as many lines as it gives.
+     */
+    private long[] scan() throws IOException {
+        long[] found = new long[16];
+        int count = 0;
+        long position = 0;
+        while (true) {
+            while (position < length && isLineEnd(byteAt(position))) {
+                position++;
+            }
+            if (position >= length) {
+                break;
+            }
+
+            if (count == found.length) {
+                found = Arrays.copyOf(found, count * 2);
+            }
+            found[count++] = position;
+
+            int height = parseHeight(position);
+            position = nextLine(position);
+            for (int row = 0; row < height; row++) {
+                if (position >= length) {
+                    throw new IOException("level at offset " + found[count - 1] + " is truncated");
+                }
+                position = nextLine(position);
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Return the height given in the header line starting at the given offset.
+     */
+    private int parseHeight(long position) throws IOException {
+        long end = position;
+        long separator = -1;
+        while (end < length && !isLineEnd(byteAt(end))) {
+            if (byteAt(end) == ' ' && separator < 0) separator = end;
+            end++;
+        }
+        int height = 0;
+        boolean valid = separator > position && separator + 1 < end && end - separator <= 10;
+        for (long i = separator + 1; valid && i < end; i++) {
+            byte b = byteAt(i);
+            valid = b >= '0' && b <= '9';
+            height = height * 10 + (b - '0');
+        }
+        if (!valid) {
+            throw new IOException("invalid level header at offset " + position);
+        }
+        return height;
+    }
+
+    /**
+     * Return the offset of the line after the one containing the given offset.
+     */
+    private long nextLine(long position) {
+        while (position < length && byteAt(position) != '\n') {
+            position++;
+        }
+        return position + 1;
+    }
+
+    private byte byteAt(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & SEGMENT_MASK));
+    }
+
+    private static boolean isLineEnd(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Read the offsets from the given index file.
+     * @return the offsets, or null if there is no index or it is stale
+     */
+    private static long[] readIndex(Path indexFile, long length, long modified) {
+        if (!Files.isRegularFile(indexFile)) {
+            return null;
+        }
+        try {
+            ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+            if (index.remaining() < INDEX_HEADER_BYTES
+                    || index.getInt() != INDEX_MAGIC || index.getInt() != INDEX_VERSION
+                    || index.getLong() != length || index.getLong() != modified) {
+                return null;
+            }
+            int count = index.getInt();
+            if (count < 0 || index.remaining() != (long) count * Long.BYTES) {
+                return null;
+            }
+            long[] offsets = new long[count];
+            index.asLongBuffer().get(offsets);
+            return offsets;
+        } catch (IOException e) {
+            // a damaged index is rebuilt
+            return null;
+        }
+    }
+
+    private static void writeIndex(Path indexFile, long length, long modified, long[] offsets) {
+        ByteBuffer index = ByteBuffer.allocate(INDEX_HEADER_BYTES + offsets.length * Long.BYTES);
+        index.putInt(INDEX_MAGIC).putInt(INDEX_VERSION).putLong(length).putLong(modified).putInt(offsets.length);
+        index.asLongBuffer().put(offsets);
+
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(indexFile.toAbsolutePath().getParent(), "level-pack", ".tmp");
+            Files.write(temporary, index.array());
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the index is only a cache; without it the pack is scanned again next time
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package sokoban.parser;
+
+import sokoban.game.Game;
+import sokoban.game.LevelTemplate;
+import sokoban.io.input.InputHandler;
+import sokoban.io.output.Renderer;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe cache of {@link LevelTemplate}s keyed by the level text, so
+ * every level is parsed only once no matter how many games are started.
+ *
+ * The cache holds at most a maximum number of templates; when it is full,
+ * the least recently used template is evicted and parsed again if it is
+ * needed later. Levels are parsed outside the lock, so a level requested by
+ * several threads at once may be parsed more than once.
+ */
+public class LevelTemplateCache {
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final PlaintextParser parser = new PlaintextParser();
+    private final Map<String, LevelTemplate> templates;
+
+    public LevelTemplateCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize maximum number of cached templates, must be positive
+     */
+    public LevelTemplateCache(int maxSize) {
+        assert maxSize > 0;
+        this.templates = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LevelTemplate> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Return the template of the given level, parsing it if it is not cached.
+     * @throws IOException if the level is malformed
+     */
+    public LevelTemplate get(String levelText) throws IOException {
+        assert levelText != null;
+        synchronized (templates) {
+            LevelTemplate template = templates.get(levelText);
+            if (template != null) {
+                return template;
+            }
+        }
+        LevelTemplate template = parser.makeTemplateFromText(levelText);
+        synchronized (templates) {
+            LevelTemplate cached = templates.putIfAbsent(levelText, template);
+            return cached != null ? cached : template;
+        }
+    }
+
+    /**
+     * Start a new game of the given level using the given renderer and input handler.
+     * @throws IOException if the level is malformed
+     */
+    public Game newGame(String levelText, Renderer renderer, InputHandler inputHandler) throws IOException {
+        return get(levelText).newGame(renderer, inputHandler);
+    }
+
+    /**
+     * Return the number of cached templates.
+     */
+    public int size() {
+        synchronized (templates) {
+            return templates.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (templates) {
+            templates.clear();
+        }
+    }
+}
@@ -1,83 +1,307 @@
 package sokoban.parser;
 
-import sokoban.entity.BreakableWallEntity;
-import sokoban.entity.ExplosiveEntity;
+import sokoban.entity.CollisionRules;
+import sokoban.game.Board;
 import sokoban.game.Game;
-import sokoban.game.Point;
+import sokoban.game.LevelTemplate;
 import sokoban.io.input.InputHandler;
 import sokoban.io.output.Renderer;
-import sokoban.tile.FloorTile;
-import sokoban.tile.WallTile;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Parses level files according to the description and creates a {@link Game}
  * instance.
+ *
+ * Besides single levels, packs of many levels can be parsed as a stream
+ * from a {@link Reader}, {@link InputStream} or file.
+ *
+ * Levels are parsed into a {@link LevelTemplate} first; to start many games
+ * of the same level, parse it once with
+ * {@link PlaintextParser#makeTemplateFromText(String)} or use a
+ * {@link LevelTemplateCache}.
+ *
+ * Besides the built-in characters, a parser created with
+ * {@link CollisionRules} reads the symbol of every type the rules define
+ * (see {@link CollisionRules#getSymbol(int)}) as an entity of that type.
  */
 public class PlaintextParser implements Parser {
+    // characters of tiles and the player, which no entity type may use
+    private static final String RESERVED = "# GP";
+
+    private final CollisionRules collisionRules;
+    private final Renderer renderer;
+    private final InputHandler inputHandler;
+
+    /**
+     * Create a parser whose games use the renderer and input handler of
+     * the global {@link sokoban.game.SokobanObjectProvider}.
+     */
+    public PlaintextParser() {
+        this(null, null);
+    }
+
+    /**
+     * Create a parser whose games use the given renderer and input handler.
+     */
+    public PlaintextParser(Renderer renderer, InputHandler inputHandler) {
+        this(CollisionRules.standard(), renderer, inputHandler);
+    }
+
+    /**
+     * Create a parser for levels with entities of the types of the given
+     * rules, whose games use the renderer and input handler of the global
+     * {@link sokoban.game.SokobanObjectProvider}.
+     */
+    public PlaintextParser(CollisionRules collisionRules) {
+        this(collisionRules, null, null);
+    }
+
+    /**
+     * Create a parser for levels with entities of the types of the given
+     * rules, whose games use the given renderer and input handler.
+     * @throws IllegalArgumentException if two types have the same symbol
+     * or a type uses the symbol of a tile or the player
+     */
+    public PlaintextParser(CollisionRules collisionRules, Renderer renderer, InputHandler inputHandler) {
+        assert collisionRules != null;
+        for (int type = CollisionRules.BOX; type < collisionRules.getTypeCount(); type++) {
+            char symbol = collisionRules.getSymbol(type);
+            if (RESERVED.indexOf(symbol) >= 0 || typeOf(collisionRules, symbol) != type) {
+                throw new IllegalArgumentException("symbol '" + symbol + "' of type "
+                        + collisionRules.getTypeName(type) + " is already used");
+            }
+        }
+        this.collisionRules = collisionRules;
+        this.renderer = renderer;
+        this.inputHandler = inputHandler;
+    }
+
     public Game makeGameFromText(String someText) {
-        StringReader stringReader = new StringReader(someText);
-        BufferedReader reader = new BufferedReader(stringReader);
+        BufferedReader reader = new BufferedReader(new StringReader(someText));
 
         try {
-            String line;
-            line = reader.readLine();
-            Pattern pattern = Pattern.compile("(\\d+) (\\d+)");
-            Matcher matcher = pattern.matcher(line);
-            int width = 0, height = 0;
-            if (matcher.matches()) {
-                width = Integer.parseInt(matcher.group(1));
-                height = Integer.parseInt(matcher.group(2));
-            }
+            return readGame(reader);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
 
-            Game.GameBuilder gameBuilder = new Game.GameBuilder(width, height);
-
-            int x, y = 0;
-            while ((line = reader.readLine()) != null) {
-                y++;
-                x = 0;
-                for (Character c : line.toCharArray()) {
-                    x++;
-                    Point p = new Point(x, y);
-                    switch (c) {
-                        case '#':
-                            gameBuilder.setTileTo(p, new WallTile(p));
-                            break;
-                        case ' ':
-                            gameBuilder.setTileTo(p, new FloorTile(p));
-                            break;
-                        case 'P':
-                            gameBuilder.setPlayerTo(p);
-                            break;
-                        case 'G':
-                            gameBuilder.setGoalTile(p);
-                            break;
-                        case 'B':
-                            gameBuilder.addBoxEntity(p);
-                            break;
-                        // extended rules
-                        case 'O':
-                            gameBuilder.setEntityTo(p, new ExplosiveEntity());
-                            break;
-                        case 'X':
-                            gameBuilder.setEntityTo(p, new BreakableWallEntity());
-                            break;
-                        default:
-                            throw new AssertionError("invalid character: " + c);
+    /**
+     * Return the games of all levels in the given pack, one after the other.
+     *
+     * A pack consists of levels in the usual format, each starting with its
+     * header line and followed by exactly as many rows as the header says;
+     * empty lines between levels are skipped. Levels are parsed only when
+     * the stream advances, so memory use does not depend on the size of the
+     * pack. Errors while reading are thrown as {@link UncheckedIOException}.
+     *
+     * Closing the stream closes the reader.
+     */
+    public Stream<Game> makeGamesFromReader(Reader reader) {
+        assert reader != null;
+        BufferedReader buffered = reader instanceof BufferedReader
+                ? (BufferedReader) reader
+                : new BufferedReader(reader);
+
+        Iterator<Game> games = new Iterator<Game>() {
+            private Game next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = readGame(buffered);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
                 }
+                return next != null;
             }
-            return gameBuilder.build();
 
-        } catch (IOException e) {
-            e.printStackTrace();
+            @Override
+            public Game next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Game game = next;
+                next = null;
+                return game;
+            }
+        };
+
+        Spliterator<Game> spliterator = Spliterators.spliteratorUnknownSize(
+                games, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                buffered.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Return the games of all levels in the given UTF-8 encoded pack
+     * (see {@link PlaintextParser#makeGamesFromReader(Reader)}).
+     */
+    public Stream<Game> makeGamesFromStream(InputStream in) {
+        return makeGamesFromReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Return the games of all levels in the given UTF-8 encoded pack file
+     * (see {@link PlaintextParser#makeGamesFromReader(Reader)}). The stream
+     * must be closed to release the file.
+     */
+    public Stream<Game> makeGamesFromFile(Path path) throws IOException {
+        return makeGamesFromReader(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read the next level from the given reader, skipping empty lines in
+     * front of its header.
+     * @return the game, or null if the reader is exhausted
+     * @throws IOException if reading fails or the level is malformed
+     */
+    public Game readGame(BufferedReader reader) throws IOException {
+        LevelTemplate template = readTemplate(reader);
+        if (template == null) {
+            return null;
         }
+        return renderer == null && inputHandler == null
+                ? template.newGame()
+                : template.newGame(renderer, inputHandler);
+    }
 
-        return null;
+    /**
+     * Parse the given level into a template from which games can be started
+     * repeatedly (see {@link LevelTemplate}).
+     * @throws IOException if the level is malformed
+     */
+    public LevelTemplate makeTemplateFromText(String someText) throws IOException {
+        LevelTemplate template = readTemplate(new BufferedReader(new StringReader(someText)));
+        if (template == null) {
+            throw new IOException("empty level");
+        }
+        return template;
+    }
+
+    /**
+     * Read the next level from the given reader as a template, skipping
+     * empty lines in front of its header.
+     * @return the template, or null if the reader is exhausted
+     * @throws IOException if reading fails or the level is malformed
+     */
+    public LevelTemplate readTemplate(BufferedReader reader) throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (line.isEmpty());
+
+        int separator = line.indexOf(' ');
+        int width = separator < 0 ? -1 : parseSize(line, 0, separator);
+        int height = separator < 0 ? -1 : parseSize(line, separator + 1, line.length());
+        if (width < 0 || height < 0) {
+            throw new IOException("invalid level header: " + line);
+        }
+
+        LevelTemplate.Builder builder = new LevelTemplate.Builder(width, height);
+        builder.setCollisionRules(collisionRules);
+        boolean hasPlayer = false;
+        for (int y = 1; y <= height; y++) {
+            line = reader.readLine();
+            if (line == null) {
+                throw new IOException("level ends after " + (y - 1) + " of " + height + " rows");
+            }
+            if (line.length() > width) {
+                throw new IOException("row " + y + " is longer than the level width " + width);
+            }
+            for (int x = 1; x <= line.length(); x++) {
+                char c = line.charAt(x - 1);
+                parseCell(builder, c, x, y);
+                hasPlayer |= c == 'P';
+            }
+        }
+        if (!hasPlayer) {
+            throw new IOException("level has no player");
+        }
+        return builder.build();
+    }
+
+    private void parseCell(LevelTemplate.Builder builder, char c, int x, int y) throws IOException {
+        switch (c) {
+            case '#':
+                builder.setCell(x, y, Board.WALL);
+                break;
+            case ' ':
+                builder.setCell(x, y, Board.FLOOR);
+                break;
+            case 'P':
+                builder.setPlayerTo(x, y);
+                break;
+            case 'G':
+                builder.setCell(x, y, Board.GOAL);
+                break;
+            default:
+                // boxes, extended rules and the types defined by the rules
+                int type = typeOf(collisionRules, c);
+                if (type == CollisionRules.CUSTOM) {
+                    throw new IOException("invalid character '" + c + "' at " + x + "," + y);
+                }
+                builder.setEntityTo(x, y, type);
+        }
+    }
+
+    /**
+     * Return the first type other than the player with the given symbol,
+     * or {@link CollisionRules#CUSTOM} if there is none.
+     */
+    private static int typeOf(CollisionRules rules, char symbol) {
+        for (int type = CollisionRules.BOX; type < rules.getTypeCount(); type++) {
+            if (rules.getSymbol(type) == symbol) {
+                return type;
+            }
+        }
+        return CollisionRules.CUSTOM;
+    }
+
+    /**
+     * Parse the decimal number between the given indices.
+     * @return the number, or -1 if the text is not a number
+     */
+    private static int parseSize(String text, int from, int to) {
+        if (from == to || to - from > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
     }
 }
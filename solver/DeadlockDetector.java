@@ -0,0 +1,313 @@
+package sokoban.solver;
+
+import sokoban.entity.CollisionRules;
+import sokoban.game.Zobrist;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Detects positions that became unsolvable through the last push, looking
+ * only at the neighbourhood of the pushed box.
+ *
+ * Two kinds of deadlocks are detected:
+ * <ul>
+ *     <li>Freeze deadlocks: the pushed box can no longer move along either
+ *     axis, because it is blocked by walls, dead squares or other boxes
+ *     that are frozen themselves, and one of the frozen boxes is not on a
+ *     goal.</li>
+ *     <li>Corral deadlocks: the pushed box closes an area the player can not
+ *     enter. Only the boxes around that area are kept and a small search
+ *     checks whether they can ever be placed on goals or opened up for the
+ *     player. Removing the other boxes only makes this easier, so if the
+ *     search fails the position is lost.</li>
+ * </ul>
+ * The checks are conservative: a reported deadlock is always real, but not
+ * every deadlock is reported. A detector owns scratch arrays and must only
+ * be used by one thread at a time.
+ */
+public class DeadlockDetector {
+    /**
+     * The dynamic part of the position being checked.
+     */
+    public interface Position {
+        boolean isWall(int cell);
+        boolean isBox(int cell);
+    }
+
+    /** Corrals with more boxes than this are not checked. */
+    private static final int MAX_CORRAL_BOXES = 6;
+    /** Number of states the corral search may visit before giving up. */
+    private static final int CORRAL_NODE_LIMIT = 1000;
+
+    private static final int NOT_FROZEN = 0, FROZEN_ON_GOALS = 1, FROZEN_OFF_GOAL = 2;
+
+    private final SolverLevel level;
+    private final boolean[] asWall;
+    private final int[] marks;
+    private final int[] queue;
+    private final int[] interior;
+    private final int[] playerRegion;
+    private final boolean[] occupied;
+    private int generation, interiorGeneration, playerGeneration;
+
+    public DeadlockDetector(SolverLevel level) {
+        this.level = level;
+        this.asWall = new boolean[level.size()];
+        this.marks = new int[level.size()];
+        this.queue = new int[level.size()];
+        this.interior = new int[level.size()];
+        this.playerRegion = new int[level.size()];
+        this.occupied = new boolean[level.size()];
+    }
+
+    /**
+     * Return whether the position is lost after the box now standing on the
+     * given cell has been pushed there.
+     * @param position position after the push
+     * @param box cell of the pushed box
+     * @param player cell of the player
+     */
+    public boolean isDeadlocked(Position position, int box, int player) {
+        return isFreezeDeadlock(position, box) || isCorralDeadlock(position, box, player);
+    }
+
+    /**
+     * Return whether the box on the given cell is frozen together with a
+     * box that is not on a goal.
+     */
+    public boolean isFreezeDeadlock(Position position, int box) {
+        assert position.isBox(box);
+        return frozen(position, box) == FROZEN_OFF_GOAL;
+    }
+
+    private int frozen(Position position, int box) {
+        asWall[box] = true;
+        int horizontal = blocked(position, box, 2, 3);
+        int result = NOT_FROZEN;
+        if (horizontal != NOT_FROZEN) {
+            int vertical = blocked(position, box, 0, 1);
+            if (vertical != NOT_FROZEN) {
+                result = level.isGoal(box) ? Math.max(horizontal, vertical) : FROZEN_OFF_GOAL;
+            }
+        }
+        asWall[box] = false;
+        return result;
+    }
+
+    /**
+     * Return whether the box can not move along the axis given by the two
+     * directions, and whether a box not on a goal is involved.
+     */
+    private int blocked(Position position, int box, int direction, int opposite) {
+        int a = level.neighbour(box, direction), b = level.neighbour(box, opposite);
+        if (isSolid(position, a) || isSolid(position, b)) {
+            return FROZEN_ON_GOALS;
+        }
+        if (level.isDead(a) && level.isDead(b)) {
+            return FROZEN_ON_GOALS;
+        }
+        int result = NOT_FROZEN;
+        if (position.isBox(a)) {
+            result = frozen(position, a);
+        }
+        if (result == NOT_FROZEN && position.isBox(b)) {
+            result = frozen(position, b);
+        }
+        return result;
+    }
+
+    private boolean isSolid(Position position, int cell) {
+        return cell < 0 || position.isWall(cell) || asWall[cell];
+    }
+
+    /**
+     * Return whether the pushed box closes an area the player can not enter
+     * and whose boxes can neither be placed on goals nor opened up.
+     */
+    public boolean isCorralDeadlock(Position position, int box, int player) {
+        nextGeneration();
+        int size = flood(player, cell -> !position.isWall(cell) && !position.isBox(cell));
+        playerGeneration++;
+        for (int i = 0; i < size; i++) {
+            playerRegion[queue[i]] = playerGeneration;
+        }
+        int examined = interiorGeneration;
+
+        // the corral may start next to the pushed box or next to a box it touches
+        for (int d = 0; d < SolverLevel.DIRECTIONS.length; d++) {
+            int next = level.neighbour(box, d);
+            if (next >= 0 && position.isBox(next)) {
+                for (int e = 0; e < SolverLevel.DIRECTIONS.length; e++) {
+                    if (isClosedCorral(position, level.neighbour(next, e), player, examined)) {
+                        return true;
+                    }
+                }
+            } else if (isClosedCorral(position, next, player, examined)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return whether the given cell belongs to an area the player can not
+     * reach and that can never be opened up.
+     * @param examined last interior generation before the current check;
+     *                 interiors with a later generation have been checked already
+     */
+    private boolean isClosedCorral(Position position, int start, int player, int examined) {
+        if (start < 0 || position.isWall(start) || position.isBox(start)
+                || playerRegion[start] == playerGeneration || interior[start] > examined) {
+            return false;
+        }
+
+        nextGeneration();
+        int interiorSize = flood(start, cell -> !position.isWall(cell) && !position.isBox(cell));
+        interiorGeneration++;
+        for (int i = 0; i < interiorSize; i++) {
+            interior[queue[i]] = interiorGeneration;
+        }
+        int[] boxes = corralBoxes(position, interiorSize);
+        return boxes != null && !canOpen(position, boxes, player);
+    }
+
+    /**
+     * Collect the boxes next to the interior cells at the start of the queue.
+     * @return the sorted box cells, or null if there are too many
+     */
+    private int[] corralBoxes(Position position, int interiorSize) {
+        int[] boxes = new int[MAX_CORRAL_BOXES];
+        int count = 0;
+        for (int i = 0; i < interiorSize; i++) {
+            for (int d = 0; d < SolverLevel.DIRECTIONS.length; d++) {
+                int cell = level.neighbour(queue[i], d);
+                if (cell < 0 || !position.isBox(cell) || contains(boxes, count, cell)) {
+                    continue;
+                }
+                if (count == MAX_CORRAL_BOXES) {
+                    return null;
+                }
+                boxes[count++] = cell;
+            }
+        }
+        int[] result = Arrays.copyOf(boxes, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Search the positions of the corral boxes alone for one where all of
+     * them stand on goals or the player can enter the interior marked with
+     * the current interior generation.
+     * @return false if no such position exists; true if one exists or the
+     *         search gave up
+     */
+    private boolean canOpen(Position position, int[] boxes, int player) {
+        Set<Long> visited = new HashSet<>();
+        ArrayDeque<int[]> open = new ArrayDeque<>();
+        ArrayDeque<Integer> players = new ArrayDeque<>();
+        open.add(boxes);
+        players.add(player);
+
+        while (!open.isEmpty()) {
+            if (visited.size() > CORRAL_NODE_LIMIT) {
+                return true;
+            }
+            int[] current = open.poll();
+            int from = players.poll();
+
+            boolean onGoals = true;
+            for (int box : current) {
+                occupied[box] = true;
+                onGoals &= level.isGoal(box);
+            }
+            if (onGoals) {
+                clear(occupied, current);
+                return true;
+            }
+
+            nextGeneration();
+            int size = flood(from, cell -> !position.isWall(cell) && !occupied[cell]);
+            int normalised = Integer.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                if (interior[queue[i]] == interiorGeneration) {
+                    clear(occupied, current);
+                    return true;
+                }
+                normalised = Math.min(normalised, queue[i]);
+            }
+            long hash = Zobrist.key(normalised, CollisionRules.PLAYER);
+            for (int box : current) {
+                hash ^= Zobrist.key(box, CollisionRules.BOX);
+            }
+            if (!visited.add(hash)) {
+                clear(occupied, current);
+                continue;
+            }
+
+            for (int i = 0; i < current.length; i++) {
+                int box = current[i];
+                for (int d = 0; d < SolverLevel.DIRECTIONS.length; d++) {
+                    int behind = level.neighbour(box, SolverLevel.opposite(d));
+                    int to = level.neighbour(box, d);
+                    if (behind < 0 || to < 0 || marks[behind] != generation
+                            || position.isWall(to) || occupied[to] || level.isDead(to)) {
+                        continue;
+                    }
+                    open.add(Expander.movedBoxes(current, i, to));
+                    players.add(box);
+                }
+            }
+            clear(occupied, current);
+        }
+        return false;
+    }
+
+    private interface CellFilter {
+        boolean isFree(int cell);
+    }
+
+    /**
+     * Mark all free cells connected to the given cell with the current
+     * generation; the marked cells are left at the start of the queue.
+     * @return the number of marked cells
+     */
+    private int flood(int start, CellFilter filter) {
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        marks[start] = generation;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int d = 0; d < SolverLevel.DIRECTIONS.length; d++) {
+                int next = level.neighbour(cell, d);
+                if (next < 0 || marks[next] == generation || !filter.isFree(next)) {
+                    continue;
+                }
+                marks[next] = generation;
+                queue[tail++] = next;
+            }
+        }
+        return tail;
+    }
+
+    private void nextGeneration() {
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            generation = 1;
+        }
+    }
+
+    private static boolean contains(int[] cells, int count, int cell) {
+        for (int i = 0; i < count; i++) {
+            if (cells[i] == cell) return true;
+        }
+        return false;
+    }
+
+    private static void clear(boolean[] occupied, int[] boxes) {
+        for (int box : boxes) occupied[box] = false;
+    }
+}
@@ -0,0 +1,159 @@
+package sokoban.solver;
+
+import sokoban.entity.CollisionRules;
+import sokoban.game.Zobrist;
+import sokoban.io.input.Action;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates the successors of search nodes and turns solved nodes into
+ * {@link Solution}s.
+ *
+ * An expander owns scratch arrays and must only be used by one thread at
+ * a time; parallel searches use one expander per worker.
+ */
+class Expander {
+    /**
+     * Receives the successors generated by {@link Expander#expand}.
+     */
+    interface Successors {
+        /**
+         * @return false to stop generating further successors
+         */
+        boolean accept(State child, int box, int direction);
+    }
+
+    private final SolverLevel level;
+    private final Reachability reachability, childReachability;
+    private final boolean[] occupied;
+    private final DeadlockDetector deadlockDetector;
+    private final DeadlockDetector.Position position = new DeadlockDetector.Position() {
+        @Override
+        public boolean isWall(int cell) {
+            return level.isWall(cell);
+        }
+
+        @Override
+        public boolean isBox(int cell) {
+            return occupied[cell];
+        }
+    };
+
+    Expander(SolverLevel level) {
+        this.level = level;
+        this.reachability = new Reachability(level);
+        this.childReachability = new Reachability(level);
+        this.occupied = new boolean[level.size()];
+        this.deadlockDetector = new DeadlockDetector(level);
+    }
+
+    /**
+     * Create the root state from the initial positions of the level.
+     */
+    State initialState() {
+        int[] boxes = level.getInitialBoxes().clone();
+        for (int box : boxes) occupied[box] = true;
+        int player = reachability.explore(level.getInitialPlayer(), occupied);
+        for (int box : boxes) occupied[box] = false;
+        return new State(boxes, player);
+    }
+
+    boolean isSolved(State state) {
+        for (int box : state.getBoxes()) {
+            if (!level.isGoal(box)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Generate all states reachable from the given state with one push,
+     * except those that are recognised as freeze deadlocks.
+     * @return false if the consumer stopped the generation
+     */
+    boolean expand(State state, Successors successors) {
+        int[] boxes = state.getBoxes();
+        for (int box : boxes) occupied[box] = true;
+        reachability.explore(state.getPlayer(), occupied);
+
+        boolean proceed = true;
+        for (int i = 0; i < boxes.length && proceed; i++) {
+            int box = boxes[i];
+            for (int d = 0; d < SolverLevel.DIRECTIONS.length && proceed; d++) {
+                int from = level.neighbour(box, SolverLevel.opposite(d));
+                int to = level.neighbour(box, d);
+                if (from < 0 || to < 0 || !reachability.isReachable(from)
+                        || level.isWall(to) || occupied[to] || level.isDead(to)) {
+                    continue;
+                }
+
+                occupied[box] = false;
+                occupied[to] = true;
+                // corral checks cost more than they save in the search, so only look for freezes
+                boolean deadlocked = deadlockDetector.isFreezeDeadlock(position, to);
+                int player = deadlocked ? -1 : childReachability.explore(box, occupied);
+                occupied[to] = false;
+                occupied[box] = true;
+                if (deadlocked) {
+                    continue;
+                }
+
+                int[] childBoxes = movedBoxes(boxes, i, to);
+                long boxHash = state.getBoxHash()
+                        ^ Zobrist.key(box, CollisionRules.BOX) ^ Zobrist.key(to, CollisionRules.BOX);
+                proceed = successors.accept(new State(childBoxes, boxHash, player), box, d);
+            }
+        }
+
+        for (int box : boxes) occupied[box] = false;
+        return proceed;
+    }
+
+    /**
+     * Translate the pushes leading to the given node into player moves.
+     */
+    Solution reconstruct(SearchNode node, long expanded, long elapsedNanos) {
+        List<SearchNode> path = new ArrayList<>();
+        for (SearchNode n = node; n.parent != null; n = n.parent) {
+            path.add(n);
+        }
+
+        List<Action> moves = new ArrayList<>();
+        for (int box : level.getInitialBoxes()) occupied[box] = true;
+        int player = level.getInitialPlayer();
+        for (int i = path.size() - 1; i >= 0; i--) {
+            SearchNode push = path.get(i);
+            reachability.explore(player, occupied);
+            reachability.appendPath(level.neighbour(push.box, SolverLevel.opposite(push.direction)), moves);
+            moves.add(SolverLevel.DIRECTIONS[push.direction]);
+            occupied[push.box] = false;
+            occupied[level.neighbour(push.box, push.direction)] = true;
+            player = push.box;
+        }
+        Arrays.fill(occupied, false);
+
+        return new Solution(Solution.Status.SOLVED, moves.toArray(new Action[0]), path.size(),
+                expanded, elapsedNanos);
+    }
+
+    /**
+     * Return a copy of the sorted box cells where the box at the given
+     * index has been moved to the given cell, keeping the copy sorted.
+     */
+    static int[] movedBoxes(int[] boxes, int index, int to) {
+        int[] result = boxes.clone();
+        result[index] = to;
+        int i = index;
+        while (i > 0 && result[i - 1] > result[i]) {
+            int t = result[i - 1]; result[i - 1] = result[i]; result[i] = t;
+            i--;
+        }
+        while (i < result.length - 1 && result[i + 1] < result[i]) {
+            int t = result[i + 1]; result[i + 1] = result[i]; result[i] = t;
+            i++;
+        }
+        return result;
+    }
+}
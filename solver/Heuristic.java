@@ -0,0 +1,17 @@
+package sokoban.solver;
+
+/**
+ * Estimate of the number of pushes needed to solve a state. The estimate
+ * must never exceed the real number of pushes for the solver to find
+ * solutions with a minimal number of pushes. Heuristics used by the
+ * {@link ParallelSolver} are called from several threads at once.
+ *
+ * A heuristic that recognises states from which the level cannot be solved
+ * returns {@link Heuristic#UNSOLVABLE} for them; the solvers drop such states.
+ */
+public interface Heuristic {
+    /** Estimate of states that cannot be solved. */
+    int UNSOLVABLE = Integer.MAX_VALUE / 2;
+
+    int estimate(int[] boxes);
+}
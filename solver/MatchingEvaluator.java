@@ -0,0 +1,196 @@
+package sokoban.solver;
+
+import java.util.Arrays;
+
+/**
+ * Lower bound of the number of pushes needed to bring a set of boxes onto
+ * goals: the cost of a minimum-cost matching of boxes to goals, where the
+ * cost of a pair is the {@link PushDistances push distance} of the box to
+ * the goal. Since every box needs its own goal and other boxes are ignored,
+ * the bound is admissible.
+ *
+ * The matching is found with the Hungarian algorithm on a square matrix
+ * that has a row for every box and every goal left over (with cost 0 for
+ * all goals). {@link MatchingEvaluator#reset(int[])} solves it from
+ * scratch in O(g^3) for g goals. When a single box is pushed,
+ * {@link MatchingEvaluator#moveBox(int, int)} only frees its row, makes the
+ * dual potential of the row feasible again and augments once, which takes
+ * O(g^2).
+ *
+ * An evaluator is not thread-safe; use one per thread.
+ */
+public class MatchingEvaluator {
+    /** Bound of box positions where some box cannot reach any free goal. */
+    public static final int UNSOLVABLE = Heuristic.UNSOLVABLE;
+
+    // cost of a box that cannot reach a goal; large enough that no matching
+    // prefers it over reachable pairs
+    private static final long INFINITE = 1L << 32;
+
+    private final PushDistances distances;
+    private final int size;
+    // rows and columns are 1-based, 0 is the sentinel of the algorithm
+    private final long[] u, v, minv;
+    private final int[] p, way, rowMatch, boxCell;
+    private final boolean[] used;
+    // row of the box on every cell, 0 for no box
+    private final int[] rowOfCell;
+    private int boxCount;
+    private int bound;
+
+    public MatchingEvaluator(SolverLevel level) {
+        this(new PushDistances(level), level.size());
+    }
+
+    /**
+     * Create an evaluator sharing the given distances, e.g. with the
+     * evaluators of other threads.
+     * @param cells number of cells of the level
+     */
+    public MatchingEvaluator(PushDistances distances, int cells) {
+        assert distances != null;
+        this.distances = distances;
+        this.size = distances.getGoalCount();
+        this.u = new long[size + 1];
+        this.v = new long[size + 1];
+        this.minv = new long[size + 1];
+        this.p = new int[size + 1];
+        this.way = new int[size + 1];
+        this.rowMatch = new int[size + 1];
+        this.boxCell = new int[size + 1];
+        this.used = new boolean[size + 1];
+        this.rowOfCell = new int[cells];
+    }
+
+    public PushDistances getDistances() {
+        return distances;
+    }
+
+    /**
+     * Compute the matching for the given box cells from scratch.
+     * @param boxes box cells, at most one box per goal
+     * @return the bound, see {@link MatchingEvaluator#getBound()}
+     */
+    public int reset(int[] boxes) {
+        assert boxes.length <= size;
+        for (int row = 1; row <= boxCount; row++) {
+            rowOfCell[boxCell[row]] = 0;
+        }
+        boxCount = boxes.length;
+        for (int i = 0; i < boxes.length; i++) {
+            assert rowOfCell[boxes[i]] == 0;
+            boxCell[i + 1] = boxes[i];
+            rowOfCell[boxes[i]] = i + 1;
+        }
+        Arrays.fill(u, 0);
+        Arrays.fill(v, 0);
+        Arrays.fill(p, 0);
+        for (int row = 1; row <= size; row++) {
+            augment(row);
+        }
+        return update();
+    }
+
+    /**
+     * Update the matching after the box on cell from has moved to cell to.
+     * @return the bound, see {@link MatchingEvaluator#getBound()}
+     */
+    public int moveBox(int from, int to) {
+        int row = rowOfCell[from];
+        assert row != 0 && rowOfCell[to] == 0;
+        rowOfCell[from] = 0;
+        rowOfCell[to] = row;
+        boxCell[row] = to;
+
+        p[rowMatch[row]] = 0;
+        // lower the potential so that every edge of the row is feasible
+        long potential = Long.MAX_VALUE;
+        for (int column = 1; column <= size; column++) {
+            potential = Math.min(potential, cost(row, column) - v[column]);
+        }
+        u[row] = potential;
+        augment(row);
+        return update();
+    }
+
+    /**
+     * Return the cost of the current matching, or
+     * {@link MatchingEvaluator#UNSOLVABLE} if some box cannot be matched
+     * to a goal it can reach.
+     */
+    public int getBound() {
+        return bound;
+    }
+
+    /**
+     * Return the cell of the goal the box on the given cell is matched to.
+     */
+    public int assignedGoal(int box) {
+        int row = rowOfCell[box];
+        assert row != 0;
+        return distances.getGoalCells()[rowMatch[row] - 1];
+    }
+
+    private long cost(int row, int column) {
+        if (row > boxCount) {
+            return 0;
+        }
+        int distance = distances.distance(boxCell[row], column - 1);
+        return distance == PushDistances.UNREACHABLE ? INFINITE : distance;
+    }
+
+    /**
+     * Match the given free row along a shortest augmenting path, adjusting
+     * the potentials so that they stay feasible and tight on the matching.
+     */
+    private void augment(int row) {
+        p[0] = row;
+        int column = 0;
+        Arrays.fill(minv, Long.MAX_VALUE);
+        Arrays.fill(used, false);
+        do {
+            used[column] = true;
+            int current = p[column], next = 0;
+            long delta = Long.MAX_VALUE;
+            for (int j = 1; j <= size; j++) {
+                if (!used[j]) {
+                    long reduced = cost(current, j) - u[current] - v[j];
+                    if (reduced < minv[j]) {
+                        minv[j] = reduced;
+                        way[j] = column;
+                    }
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        next = j;
+                    }
+                }
+            }
+            for (int j = 0; j <= size; j++) {
+                if (used[j]) {
+                    u[p[j]] += delta;
+                    v[j] -= delta;
+                } else {
+                    minv[j] -= delta;
+                }
+            }
+            column = next;
+        } while (p[column] != 0);
+        do {
+            int previous = way[column];
+            p[column] = p[previous];
+            column = previous;
+        } while (column != 0);
+    }
+
+    private int update() {
+        long sum = 0;
+        for (int column = 1; column <= size; column++) {
+            rowMatch[p[column]] = column;
+        }
+        for (int row = 1; row <= boxCount; row++) {
+            sum += cost(row, rowMatch[row]);
+        }
+        bound = sum >= INFINITE ? UNSOLVABLE : (int) sum;
+        return bound;
+    }
+}
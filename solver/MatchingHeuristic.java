@@ -0,0 +1,96 @@
+package sokoban.solver;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cost of a minimum-cost matching of boxes to goals by push distance, see
+ * {@link MatchingEvaluator}.
+ *
+ * Every thread using the heuristic gets an evaluator with the matching of
+ * the last state it estimated. Successive states of a search mostly differ
+ * in one or two boxes, so the matching is usually updated incrementally
+ * instead of being solved from scratch. The evaluators belong to the
+ * heuristic rather than to the threads, so they are freed together with
+ * it; the solvers create a heuristic for every search (see
+ * {@link Solver#setHeuristicFactory(java.util.function.Function)}).
+ */
+public class MatchingHeuristic implements Heuristic {
+    // more changed boxes than this are cheaper to solve from scratch
+    private static final int MAX_INCREMENTAL_MOVES = 2;
+
+    private final PushDistances distances;
+    private final int cells;
+    private final Map<Thread, Evaluation> evaluations = new ConcurrentHashMap<>();
+
+    public MatchingHeuristic(SolverLevel level) {
+        this.distances = new PushDistances(level);
+        this.cells = level.size();
+    }
+
+    public PushDistances getDistances() {
+        return distances;
+    }
+
+    @Override
+    public int estimate(int[] boxes) {
+        Evaluation evaluation = evaluations.get(Thread.currentThread());
+        if (evaluation == null) {
+            evaluation = evaluations.computeIfAbsent(Thread.currentThread(), thread -> new Evaluation());
+        }
+        return evaluation.estimate(boxes);
+    }
+
+    /**
+     * Evaluator of a thread and the sorted boxes it was last evaluated for.
+     */
+    private class Evaluation {
+        private final MatchingEvaluator evaluator = new MatchingEvaluator(distances, cells);
+        private final int[] removed = new int[MAX_INCREMENTAL_MOVES];
+        private final int[] added = new int[MAX_INCREMENTAL_MOVES];
+        private int[] last;
+
+        int estimate(int[] boxes) {
+            if (last == null || last.length != boxes.length || !diff(boxes)) {
+                last = boxes.clone();
+                return evaluator.reset(boxes);
+            }
+            int moves = 0;
+            while (moves < MAX_INCREMENTAL_MOVES && removed[moves] >= 0) {
+                evaluator.moveBox(removed[moves], added[moves]);
+                moves++;
+            }
+            System.arraycopy(boxes, 0, last, 0, boxes.length);
+            return evaluator.getBound();
+        }
+
+        /**
+         * Collect the cells of last that are not in boxes and vice versa,
+         * both sorted, terminated by -1 if fewer than the maximum.
+         * @return false if there are too many
+         */
+        private boolean diff(int[] boxes) {
+            int i = 0, j = 0, removedCount = 0, addedCount = 0;
+            while (i < last.length || j < boxes.length) {
+                if (j == boxes.length || i < last.length && last[i] < boxes[j]) {
+                    if (removedCount == MAX_INCREMENTAL_MOVES) {
+                        return false;
+                    }
+                    removed[removedCount++] = last[i++];
+                } else if (i == last.length || boxes[j] < last[i]) {
+                    if (addedCount == MAX_INCREMENTAL_MOVES) {
+                        return false;
+                    }
+                    added[addedCount++] = boxes[j++];
+                } else {
+                    i++;
+                    j++;
+                }
+            }
+            if (removedCount < MAX_INCREMENTAL_MOVES) {
+                removed[removedCount] = -1;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package sokoban.solver;
+
+/**
+ * Sum of the Manhattan distances of every box to its nearest goal.
+ *
+ * The distances are precomputed per cell, so an estimate costs one lookup
+ * per box.
+ */
+public class NearestGoalHeuristic implements Heuristic {
+    private final int[] distances;
+
+    public NearestGoalHeuristic(SolverLevel level) {
+        int width = level.getWidth();
+        distances = new int[level.size()];
+        for (int cell = 0; cell < level.size(); cell++) {
+            int best = Integer.MAX_VALUE;
+            for (int goal : level.getGoalCells()) {
+                int d = Math.abs(goal % width - cell % width) + Math.abs(goal / width - cell / width);
+                best = Math.min(best, d);
+            }
+            distances[cell] = best;
+        }
+    }
+
+    @Override
+    public int estimate(int[] boxes) {
+        int sum = 0;
+        for (int box : boxes) {
+            sum += distances[box];
+        }
+        return sum;
+    }
+}
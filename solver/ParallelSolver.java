@@ -0,0 +1,242 @@
+package sokoban.solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Solver that expands the search frontier on several cores.
+ *
+ * The open list is kept in buckets by estimated solution cost. All nodes of
+ * the cheapest bucket are expanded in parallel by fork/join tasks that split
+ * the bucket until the pieces are small, so idle workers steal pieces from
+ * busy ones. Successors are deduplicated in a shared concurrent map of
+ * the best known number of pushes per state, or in a
+ * {@link StripedTranspositionTable} if a table size is set (see
+ * {@link Solver#setTranspositionTableBytes(long)}). Since the nodes of a bucket
+ * are only expanded once all cheaper buckets are exhausted, the solutions
+ * have the same quality as those of the sequential {@link Solver}.
+ *
+ * A solver created with a number of workers owns its pool and must be
+ * closed to stop the workers; a pool passed by the caller is left to the
+ * caller.
+ */
+public class ParallelSolver extends Solver implements AutoCloseable {
+    /** Buckets are split until pieces have at most this many nodes. */
+    private static final int SPLIT_THRESHOLD = 32;
+
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+
+    /**
+     * Create a solver using the common fork/join pool.
+     */
+    public ParallelSolver() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a solver running on a new pool with the given number of
+     * workers, which is shut down by {@link ParallelSolver#close()}.
+     * @param parallelism must be positive
+     */
+    public ParallelSolver(int parallelism) {
+        this(new ForkJoinPool(parallelism), true);
+    }
+
+    /**
+     * @param pool pool the search tasks are run on, must not be null; it
+     *             is not shut down by {@link ParallelSolver#close()}
+     */
+    public ParallelSolver(ForkJoinPool pool) {
+        this(pool, false);
+    }
+
+    private ParallelSolver(ForkJoinPool pool, boolean ownsPool) {
+        assert pool != null;
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @Override
+    public Solution solve(SolverLevel level) {
+        assert level != null;
+        return new Search(level, createHeuristic(level)).run();
+    }
+
+    /**
+     * Shut down the pool if the solver has created it. The solver must not
+     * be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * State of a single parallel search run.
+     */
+    private class Search {
+        private final SolverLevel level;
+        private final Heuristic heuristic;
+        // expanders of the workers, dropped with the search
+        private final Map<Thread, Expander> expanders = new ConcurrentHashMap<>();
+        private final Map<State, Integer> bestPushes;
+        private final StripedTranspositionTable table;
+        private final AtomicInteger stateCount = new AtomicInteger();
+        private final AtomicLong expanded = new AtomicLong();
+        private final AtomicBoolean limitReached = new AtomicBoolean();
+        private final long startTime = System.nanoTime();
+
+        Search(SolverLevel level, Heuristic heuristic) {
+            this.level = level;
+            this.heuristic = heuristic;
+            long tableBytes = getTranspositionTableBytes();
+            this.table = tableBytes > 0 ? new StripedTranspositionTable(tableBytes) : null;
+            this.bestPushes = table == null ? new ConcurrentHashMap<>() : null;
+        }
+
+        Solution run() {
+            Expander expander = new Expander(level);
+            State root = expander.initialState();
+            improve(root, 0);
+
+            TreeMap<Integer, List<SearchNode>> buckets = new TreeMap<>();
+            SearchNode rootNode = new SearchNode(root, null, -1, -1, 0, heuristic.estimate(root.getBoxes()));
+            buckets.computeIfAbsent(rootNode.cost(), c -> new ArrayList<>()).add(rootNode);
+            long open = 1;
+
+            while (!buckets.isEmpty()) {
+                List<SearchNode> bucket = new ArrayList<>();
+                List<SearchNode> cheapest = buckets.pollFirstEntry().getValue();
+                open -= cheapest.size();
+                for (SearchNode node : cheapest) {
+                    int known = knownPushes(node.state);
+                    if (known != TranspositionTable.MISSING && known < node.pushes) {
+                        continue;
+                    }
+                    if (expander.isSolved(node.state)) {
+                        return expander.reconstruct(node, expanded.get(), System.nanoTime() - startTime);
+                    }
+                    bucket.add(node);
+                }
+
+                List<SearchNode> children = pool.invoke(new ExpandTask(bucket, 0, bucket.size()));
+                open += children.size();
+                // the table forgets states, so the open nodes are bounded instead
+                if (table != null && open > getStateLimit()) {
+                    limitReached.set(true);
+                }
+                if (limitReached.get()) {
+                    return new Solution(Solution.Status.LIMIT_REACHED, null, 0, expanded.get(),
+                            System.nanoTime() - startTime);
+                }
+                for (SearchNode child : children) {
+                    buckets.computeIfAbsent(child.cost(), c -> new ArrayList<>()).add(child);
+                }
+            }
+            return new Solution(Solution.Status.UNSOLVABLE, null, 0, expanded.get(), System.nanoTime() - startTime);
+        }
+
+        /**
+         * Return the best known number of pushes for the given state or
+         * {@link TranspositionTable#MISSING}.
+         */
+        private int knownPushes(State state) {
+            if (table != null) {
+                return table.get(state.getZobristHash());
+            }
+            Integer known = bestPushes.get(state);
+            return known == null ? TranspositionTable.MISSING : known;
+        }
+
+        /**
+         * Record the given number of pushes for the given state if it is
+         * better than the known one.
+         * @return whether the state should be explored with this number of pushes
+         */
+        private boolean improve(State state, int pushes) {
+            if (table != null) {
+                // the expansion counter as priority replaces the oldest entries
+                return table.putIfLower(state.getZobristHash(), pushes, (int) expanded.get());
+            }
+            while (true) {
+                Integer known = bestPushes.putIfAbsent(state, pushes);
+                if (known == null) {
+                    if (stateCount.incrementAndGet() > getStateLimit()) {
+                        limitReached.set(true);
+                    }
+                    return true;
+                }
+                if (known <= pushes) {
+                    return false;
+                }
+                if (bestPushes.replace(state, known, pushes)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Task expanding a range of a bucket and collecting the successors.
+         */
+        private class ExpandTask extends RecursiveTask<List<SearchNode>> {
+            private static final long serialVersionUID = 1L;
+
+            private final List<SearchNode> nodes;
+            private final int from, to;
+
+            ExpandTask(List<SearchNode> nodes, int from, int to) {
+                this.nodes = nodes;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected List<SearchNode> compute() {
+                if (to - from > SPLIT_THRESHOLD) {
+                    int middle = (from + to) >>> 1;
+                    ExpandTask left = new ExpandTask(nodes, from, middle);
+                    left.fork();
+                    List<SearchNode> result = new ExpandTask(nodes, middle, to).compute();
+                    result.addAll(left.join());
+                    return result;
+                }
+
+                List<SearchNode> result = new ArrayList<>();
+                Expander expander = expanders.computeIfAbsent(Thread.currentThread(), t -> new Expander(level));
+                for (int i = from; i < to && !limitReached.get(); i++) {
+                    SearchNode node = nodes.get(i);
+                    if (expanded.incrementAndGet() > getNodeLimit()) {
+                        limitReached.set(true);
+                        break;
+                    }
+                    expander.expand(node.state, (child, box, direction) -> {
+                        int pushes = node.pushes + 1;
+                        if (improve(child, pushes)) {
+                            int estimate = heuristic.estimate(child.getBoxes());
+                            if (estimate != Heuristic.UNSOLVABLE) {
+                                result.add(new SearchNode(child, node, box, direction, pushes, estimate));
+                            }
+                        }
+                        return !limitReached.get();
+                    });
+                }
+                return result;
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package sokoban.solver;
+
+import java.util.Arrays;
+
+/**
+ * Number of pushes needed to move a box from any cell to any goal, taking
+ * walls into account but ignoring other boxes.
+ *
+ * The distances to a goal are computed by pulling a box away from the goal
+ * in a breadth-first search: a box on cell c can have been pushed there
+ * from its neighbour n if the player could stand on the cell behind n.
+ * Whether the player can actually get there is not checked, so the
+ * distances never exceed the real number of pushes.
+ *
+ * Distances are stored by cell, so the distances of one cell to all goals
+ * are next to each other.
+ */
+public class PushDistances {
+    /** Distance of a cell from which a goal cannot be reached. */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final int[] goals;
+    private final int[] distances;
+
+    public PushDistances(SolverLevel level) {
+        this.goals = level.getGoalCells();
+        this.distances = new int[level.size() * goals.length];
+        Arrays.fill(distances, UNREACHABLE);
+
+        int[] queue = new int[level.size()];
+        for (int g = 0; g < goals.length; g++) {
+            int head = 0, tail = 0;
+            distances[goals[g] * goals.length + g] = 0;
+            queue[tail++] = goals[g];
+            while (head < tail) {
+                int box = queue[head++];
+                int distance = distances[box * goals.length + g];
+                for (int direction = 0; direction < SolverLevel.DIRECTIONS.length; direction++) {
+                    // pulling the box in this direction means it was pushed from there
+                    int from = level.neighbour(box, direction);
+                    int player = from < 0 ? -1 : level.neighbour(from, direction);
+                    if (player < 0 || level.isWall(from) || level.isWall(player)
+                            || distances[from * goals.length + g] != UNREACHABLE) {
+                        continue;
+                    }
+                    distances[from * goals.length + g] = distance + 1;
+                    queue[tail++] = from;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the goal cells, in the order of the goal indices. The array
+     * must not be modified.
+     */
+    public int[] getGoalCells() {
+        return goals;
+    }
+
+    public int getGoalCount() {
+        return goals.length;
+    }
+
+    /**
+     * Return the number of pushes needed to move a box from the given cell
+     * to the goal with the given index, or {@link PushDistances#UNREACHABLE}.
+     */
+    public int distance(int cell, int goal) {
+        return distances[cell * goals.length + goal];
+    }
+}
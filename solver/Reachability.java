@@ -0,0 +1,83 @@
+package sokoban.solver;
+
+import sokoban.io.input.Action;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Breadth-first search over the cells the player can walk to without
+ * pushing a box.
+ *
+ * The arrays are reused between searches; a generation counter avoids
+ * clearing them, so a search only touches the cells it reaches.
+ */
+class Reachability {
+    private final SolverLevel level;
+    private final int[] marks;
+    private final byte[] via;
+    private final int[] queue;
+    private int generation;
+    private int start;
+
+    Reachability(SolverLevel level) {
+        this.level = level;
+        this.marks = new int[level.size()];
+        this.via = new byte[level.size()];
+        this.queue = new int[level.size()];
+    }
+
+    /**
+     * Explore the region reachable from the given cell.
+     * @param from start cell of the player
+     * @param occupied cells blocked by boxes
+     * @return the smallest reachable cell index, used to normalise states
+     */
+    int explore(int from, boolean[] occupied) {
+        if (++generation == 0) {
+            Arrays.fill(marks, 0);
+            generation = 1;
+        }
+        start = from;
+        int min = from;
+        int head = 0, tail = 0;
+        queue[tail++] = from;
+        marks[from] = generation;
+        via[from] = -1;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int d = 0; d < SolverLevel.DIRECTIONS.length; d++) {
+                int next = level.neighbour(cell, d);
+                if (next < 0 || marks[next] == generation || level.isWall(next) || occupied[next]) {
+                    continue;
+                }
+                marks[next] = generation;
+                via[next] = (byte) d;
+                queue[tail++] = next;
+                if (next < min) min = next;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Return whether the given cell was reached by the last exploration.
+     */
+    boolean isReachable(int cell) {
+        return marks[cell] == generation;
+    }
+
+    /**
+     * Append the moves of a shortest path from the start of the last
+     * exploration to the given reachable cell.
+     */
+    void appendPath(int target, List<Action> moves) {
+        assert isReachable(target);
+        int insertAt = moves.size();
+        for (int cell = target; cell != start; ) {
+            int d = via[cell];
+            moves.add(insertAt, SolverLevel.DIRECTIONS[d]);
+            cell = level.neighbour(cell, SolverLevel.opposite(d));
+        }
+    }
+}
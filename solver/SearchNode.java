@@ -0,0 +1,27 @@
+package sokoban.solver;
+
+/**
+ * Node of a search tree, remembering the push that led to it.
+ */
+class SearchNode {
+    final State state;
+    final SearchNode parent;
+    final int box, direction;
+    final int pushes, estimate;
+
+    SearchNode(State state, SearchNode parent, int box, int direction, int pushes, int estimate) {
+        this.state = state;
+        this.parent = parent;
+        this.box = box;
+        this.direction = direction;
+        this.pushes = pushes;
+        this.estimate = estimate;
+    }
+
+    /**
+     * Return the estimated total number of pushes of a solution through this node.
+     */
+    int cost() {
+        return pushes + estimate;
+    }
+}
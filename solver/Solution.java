@@ -0,0 +1,80 @@
+package sokoban.solver;
+
+import sokoban.io.input.Action;
+
+/**
+ * Outcome of a {@link Solver} run.
+ */
+public class Solution {
+    public enum Status {
+        /** A solution has been found. */
+        SOLVED,
+        /** The whole search space has been explored without finding a solution. */
+        UNSOLVABLE,
+        /** The node or state limit has been reached before finding a solution. */
+        LIMIT_REACHED
+    }
+
+    private final Status status;
+    private final Action[] actions;
+    private final int pushes;
+    private final long expandedNodes;
+    private final long elapsedNanos;
+
+    Solution(Status status, Action[] actions, int pushes, long expandedNodes, long elapsedNanos) {
+        assert status != Status.SOLVED || actions != null;
+        this.status = status;
+        this.actions = actions;
+        this.pushes = pushes;
+        this.expandedNodes = expandedNodes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    /**
+     * Return the moves solving the level, which can be handed to a
+     * {@link sokoban.io.input.ScriptedInputHandler}, or null if the level
+     * has not been solved.
+     */
+    public Action[] getActions() {
+        return actions;
+    }
+
+    /**
+     * Return the number of box pushes of the solution.
+     */
+    public int getPushes() {
+        return pushes;
+    }
+
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * Return the wall-clock time spent searching in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Return the number of expanded nodes per second of search time.
+     */
+    public double getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : expandedNodes * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Solution(%s, moves=%d, pushes=%d, nodes=%d, nodes/s=%.0f)",
+                status, actions == null ? 0 : actions.length, pushes, expandedNodes, getNodesPerSecond());
+    }
+}
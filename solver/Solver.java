@@ -0,0 +1,191 @@
+package sokoban.solver;
+
+import sokoban.game.Game;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * A* search over box pushes.
+ *
+ * Nodes of the search are {@link State}s; an edge is a single push of a box
+ * by one cell. The cost of a solution is its number of pushes, and the
+ * player moves between pushes are filled in when the solution is
+ * reconstructed. With an admissible {@link Heuristic} the solution has a
+ * minimal number of pushes.
+ *
+ * The search is bounded by a node limit (number of expanded states) and a
+ * state limit (number of stored states), which bounds the memory used.
+ */
+public class Solver {
+    public static final long DEFAULT_NODE_LIMIT = 10_000_000;
+    public static final int DEFAULT_STATE_LIMIT = 5_000_000;
+
+    private long nodeLimit = DEFAULT_NODE_LIMIT;
+    private int stateLimit = DEFAULT_STATE_LIMIT;
+    private long tableBytes;
+    private Function<SolverLevel, Heuristic> heuristicFactory = NearestGoalHeuristic::new;
+
+    public long getNodeLimit() {
+        return nodeLimit;
+    }
+
+    /**
+     * Set the maximal number of states expanded before giving up.
+     * @param nodeLimit must be positive
+     */
+    public void setNodeLimit(long nodeLimit) {
+        assert nodeLimit > 0;
+        this.nodeLimit = nodeLimit;
+    }
+
+    public int getStateLimit() {
+        return stateLimit;
+    }
+
+    /**
+     * Set the maximal number of states stored during the search before
+     * giving up.
+     * @param stateLimit must be positive
+     */
+    public void setStateLimit(int stateLimit) {
+        assert stateLimit > 0;
+        this.stateLimit = stateLimit;
+    }
+
+    public long getTranspositionTableBytes() {
+        return tableBytes;
+    }
+
+    /**
+     * Deduplicate states in an off-heap {@link TranspositionTable} of the
+     * given size instead of an exact hash map. Since the table forgets old
+     * states when it is full, the state limit bounds the number of open
+     * states then, which keeps the memory on the heap bounded as well.
+     * @param bytes size of the table, 0 to use an exact hash map
+     */
+    public void setTranspositionTableBytes(long bytes) {
+        assert bytes == 0 || bytes >= 64;
+        this.tableBytes = bytes;
+    }
+
+    /**
+     * Set the function creating the heuristic for a level, which is
+     * called once for every search.
+     * @param heuristicFactory must not be null
+     */
+    public void setHeuristicFactory(Function<SolverLevel, Heuristic> heuristicFactory) {
+        assert heuristicFactory != null;
+        this.heuristicFactory = heuristicFactory;
+    }
+
+    /**
+     * Solve the level in its current state in the given game. The game
+     * itself is not modified.
+     * @param game game, must not be null
+     */
+    public Solution solve(Game game) {
+        assert game != null;
+        return solve(new SolverLevel(game));
+    }
+
+    public Solution solve(SolverLevel level) {
+        assert level != null;
+        return new Search(level, createHeuristic(level)).run();
+    }
+
+    /**
+     * Create the heuristic used for the given level.
+     */
+    protected Heuristic createHeuristic(SolverLevel level) {
+        return heuristicFactory.apply(level);
+    }
+
+    /**
+     * State of a single search run.
+     */
+    private class Search implements Expander.Successors {
+        private final Heuristic heuristic;
+        private final Expander expander;
+        private final PriorityQueue<SearchNode> open = new PriorityQueue<>((a, b) ->
+                a.cost() != b.cost() ? Integer.compare(a.cost(), b.cost()) : Integer.compare(a.estimate, b.estimate));
+        private final Map<State, Integer> bestPushes;
+        private final TranspositionTable table;
+        private final long startTime = System.nanoTime();
+        private SearchNode current;
+        private long expanded;
+
+        Search(SolverLevel level, Heuristic heuristic) {
+            this.heuristic = heuristic;
+            this.expander = new Expander(level);
+            this.table = tableBytes > 0 ? new TranspositionTable(tableBytes) : null;
+            this.bestPushes = table == null ? new HashMap<>() : null;
+        }
+
+        Solution run() {
+            State root = expander.initialState();
+            record(root, 0);
+            open.add(new SearchNode(root, null, -1, -1, 0, heuristic.estimate(root.getBoxes())));
+
+            while (!open.isEmpty()) {
+                SearchNode node = open.poll();
+                int known = knownPushes(node.state);
+                if (known != TranspositionTable.MISSING && known < node.pushes) {
+                    continue;
+                }
+                if (expander.isSolved(node.state)) {
+                    return expander.reconstruct(node, expanded, System.nanoTime() - startTime);
+                }
+                current = node;
+                if (++expanded > nodeLimit || !expander.expand(node.state, this)) {
+                    return new Solution(Solution.Status.LIMIT_REACHED, null, 0, expanded,
+                            System.nanoTime() - startTime);
+                }
+            }
+            return new Solution(Solution.Status.UNSOLVABLE, null, 0, expanded, System.nanoTime() - startTime);
+        }
+
+        @Override
+        public boolean accept(State child, int box, int direction) {
+            int pushes = current.pushes + 1;
+            int known = knownPushes(child);
+            if (known != TranspositionTable.MISSING && known <= pushes) {
+                return true;
+            }
+            if (table == null
+                    ? known == TranspositionTable.MISSING && bestPushes.size() >= stateLimit
+                    : open.size() >= stateLimit) {
+                return false;
+            }
+            record(child, pushes);
+            int estimate = heuristic.estimate(child.getBoxes());
+            if (estimate != Heuristic.UNSOLVABLE) {
+                open.add(new SearchNode(child, current, box, direction, pushes, estimate));
+            }
+            return true;
+        }
+
+        /**
+         * Return the best known number of pushes for the given state or
+         * {@link TranspositionTable#MISSING}.
+         */
+        private int knownPushes(State state) {
+            if (table != null) {
+                return table.get(state.getZobristHash());
+            }
+            Integer known = bestPushes.get(state);
+            return known == null ? TranspositionTable.MISSING : known;
+        }
+
+        private void record(State state, int pushes) {
+            if (table != null) {
+                // the expansion counter as priority replaces the oldest entries
+                table.put(state.getZobristHash(), pushes, (int) expanded);
+            } else {
+                bestPushes.put(state, pushes);
+            }
+        }
+    }
+}
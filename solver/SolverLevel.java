@@ -0,0 +1,148 @@
+package sokoban.solver;
+
+import sokoban.entity.BoxEntity;
+import sokoban.entity.Entity;
+import sokoban.game.Board;
+import sokoban.game.Game;
+import sokoban.io.input.Action;
+
+import java.util.Arrays;
+
+/**
+ * Static view of a level as seen by the solver.
+ *
+ * Cells are identified by their {@link Board} index. Walls, goals and the
+ * neighbours of every cell as well as the dead squares of the game are
+ * precomputed once. Entities other than the
+ * player and boxes (explosives, breakable walls) are treated as walls, i.e.
+ * the solver never touches them.
+ */
+public class SolverLevel {
+    /** Directions in the order used for neighbour lookups. */
+    public static final Action[] DIRECTIONS = {
+            Action.MOVE_UP, Action.MOVE_DOWN, Action.MOVE_LEFT, Action.MOVE_RIGHT
+    };
+
+    private final int width, height;
+    private final boolean[] walls;
+    private final boolean[] goals;
+    private final boolean[] dead;
+    private final int[] goalCells;
+    private final int[][] neighbours;
+    private final int[] initialBoxes;
+    private final int initialPlayer;
+
+    /**
+     * Extract the level from the current state of the given game.
+     * @param game game, must not be null
+     */
+    public SolverLevel(Game game) {
+        assert game != null;
+        Board board = game.getBoard();
+        this.width = board.getWidth();
+        this.height = board.getHeight();
+        int size = board.size();
+
+        this.walls = new boolean[size];
+        this.goals = new boolean[size];
+        this.dead = new boolean[size];
+        int[] boxes = new int[size];
+        int boxCount = 0, goalCount = 0, player = -1;
+        for (int i = 0; i < size; i++) {
+            walls[i] = board.isWall(i);
+            goals[i] = board.isGoal(i);
+            dead[i] = game.isDeadSquare(i);
+            if (goals[i]) goalCount++;
+
+            Entity entity = board.entityAt(i);
+            if (entity == game.getPlayer()) {
+                player = i;
+            } else if (entity instanceof BoxEntity) {
+                boxes[boxCount++] = i;
+            } else if (entity != null) {
+                walls[i] = true;
+            }
+        }
+        assert player >= 0;
+
+        this.initialPlayer = player;
+        this.initialBoxes = Arrays.copyOf(boxes, boxCount);
+        this.goalCells = new int[goalCount];
+        for (int i = 0, g = 0; i < size; i++) {
+            if (goals[i]) goalCells[g++] = i;
+        }
+
+        this.neighbours = new int[DIRECTIONS.length][size];
+        for (int i = 0; i < size; i++) {
+            int x = i % width, y = i / width;
+            neighbours[0][i] = y > 0 ? i - width : -1;
+            neighbours[1][i] = y < height - 1 ? i + width : -1;
+            neighbours[2][i] = x > 0 ? i - 1 : -1;
+            neighbours[3][i] = x < width - 1 ? i + 1 : -1;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Return the number of cells of the level.
+     */
+    public int size() {
+        return walls.length;
+    }
+
+    public boolean isWall(int cell) {
+        return walls[cell];
+    }
+
+    public boolean isGoal(int cell) {
+        return goals[cell];
+    }
+
+    /**
+     * Return whether a box on the given cell can never reach a goal.
+     */
+    public boolean isDead(int cell) {
+        return dead[cell];
+    }
+
+    /**
+     * Return the goal cells in ascending order. The array must not be modified.
+     */
+    public int[] getGoalCells() {
+        return goalCells;
+    }
+
+    /**
+     * Return the neighbour of the given cell in the given direction
+     * (an index into {@link SolverLevel#DIRECTIONS}), or -1 if the
+     * neighbour lies outside of the level.
+     */
+    public int neighbour(int cell, int direction) {
+        return neighbours[direction][cell];
+    }
+
+    /**
+     * Return the direction opposite to the given one.
+     */
+    public static int opposite(int direction) {
+        return direction ^ 1;
+    }
+
+    /**
+     * Return the initial box cells in ascending order. The array must not be modified.
+     */
+    public int[] getInitialBoxes() {
+        return initialBoxes;
+    }
+
+    public int getInitialPlayer() {
+        return initialPlayer;
+    }
+}
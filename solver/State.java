@@ -0,0 +1,94 @@
+package sokoban.solver;
+
+import sokoban.entity.CollisionRules;
+import sokoban.game.Zobrist;
+
+import java.util.Arrays;
+
+/**
+ * Immutable search state: the sorted box cells and the normalised player
+ * cell, i.e. the smallest cell index of the region the player can reach
+ * without pushing. Two positions that only differ by non-pushing player
+ * moves are therefore equal.
+ *
+ * States are hashed with {@link Zobrist} keys. The part of the hash
+ * covering the boxes is kept separately, so that the hash of a successor
+ * can be derived from its parent with a few XOR operations.
+ */
+public final class State {
+    private final int[] boxes;
+    private final int player;
+    private final long boxHash;
+    private final long zobristHash;
+
+    /**
+     * @param boxes sorted box cells; the array is owned by the state afterwards
+     * @param player normalised player cell
+     */
+    State(int[] boxes, int player) {
+        this(boxes, hashBoxes(boxes), player);
+    }
+
+    /**
+     * @param boxes sorted box cells; the array is owned by the state afterwards
+     * @param boxHash XOR of the box keys of all box cells
+     * @param player normalised player cell
+     */
+    State(int[] boxes, long boxHash, int player) {
+        assert boxHash == hashBoxes(boxes);
+        this.boxes = boxes;
+        this.player = player;
+        this.boxHash = boxHash;
+        this.zobristHash = boxHash ^ Zobrist.key(player, CollisionRules.PLAYER);
+    }
+
+    private static long hashBoxes(int[] boxes) {
+        long hash = 0;
+        for (int box : boxes) {
+            hash ^= Zobrist.key(box, CollisionRules.BOX);
+        }
+        return hash;
+    }
+
+    /**
+     * Return the sorted box cells. The array must not be modified.
+     */
+    public int[] getBoxes() {
+        return boxes;
+    }
+
+    public int getPlayer() {
+        return player;
+    }
+
+    /**
+     * Return the XOR of the Zobrist keys of all box cells.
+     */
+    public long getBoxHash() {
+        return boxHash;
+    }
+
+    /**
+     * Return the Zobrist hash of the boxes and the normalised player cell.
+     */
+    public long getZobristHash() {
+        return zobristHash;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (zobristHash ^ (zobristHash >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof State)) return false;
+        State other = (State) o;
+        return zobristHash == other.zobristHash && player == other.player && Arrays.equals(boxes, other.boxes);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("State(player=%d, boxes=%s)", player, Arrays.toString(boxes));
+    }
+}
@@ -0,0 +1,86 @@
+package sokoban.solver;
+
+/**
+ * Thread-safe {@link TranspositionTable} for the {@link ParallelSolver}.
+ *
+ * The configured size is split into stripes, each a table of its own with
+ * its own lock, and every hash belongs to the stripe selected by some of
+ * its upper bits. Threads thus only contend when they look up hashes of
+ * the same stripe. Like the underlying tables, the striped table never
+ * grows beyond its size and forgets entries when a bucket is full.
+ */
+public class StripedTranspositionTable {
+    private static final int MAX_STRIPES = 64;
+    // the buckets of a stripe are selected by the lower bits
+    private static final int STRIPE_SHIFT = 40;
+
+    private final TranspositionTable[] stripes;
+
+    /**
+     * @param bytes maximal size of the table in bytes, at least one bucket
+     *              (64 bytes); rounded down to a power of two
+     */
+    public StripedTranspositionTable(long bytes) {
+        assert bytes >= 64;
+        int count = (int) Math.min(MAX_STRIPES, Long.highestOneBit(bytes / 64));
+        this.stripes = new TranspositionTable[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new TranspositionTable(bytes / count);
+        }
+    }
+
+    /**
+     * Return the size of the table in bytes.
+     */
+    public long capacityBytes() {
+        long bytes = 0;
+        for (TranspositionTable stripe : stripes) {
+            bytes += stripe.capacityBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Return the number of stored entries.
+     */
+    public int size() {
+        int size = 0;
+        for (TranspositionTable stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Return the value stored for the given hash or {@link TranspositionTable#MISSING}.
+     */
+    public int get(long hash) {
+        TranspositionTable stripe = stripeOf(hash);
+        synchronized (stripe) {
+            return stripe.get(hash);
+        }
+    }
+
+    /**
+     * Store the given value for the given hash unless a value that is not
+     * larger is stored for it, see {@link TranspositionTable#put(long, int, int)}.
+     * @return whether the value was stored
+     */
+    public boolean putIfLower(long hash, int value, int priority) {
+        TranspositionTable stripe = stripeOf(hash);
+        synchronized (stripe) {
+            int known = stripe.get(hash);
+            if (known != TranspositionTable.MISSING && known <= value) {
+                return false;
+            }
+            stripe.put(hash, value, priority);
+            return true;
+        }
+    }
+
+    private TranspositionTable stripeOf(long hash) {
+        return stripes[(int) (hash >>> STRIPE_SHIFT) & (stripes.length - 1)];
+    }
+}
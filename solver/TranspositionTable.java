@@ -0,0 +1,132 @@
+package sokoban.solver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed-size table mapping 64-bit state hashes (see {@link State#getZobristHash()})
+ * to an int value, stored off-heap.
+ *
+ * The table is a direct {@link ByteBuffer} of buckets with four 16 byte
+ * entries (hash, value, priority), so a bucket fills one cache line. When a
+ * bucket is full, the entry with the lowest priority is replaced; passing an
+ * increasing counter as priority replaces the oldest entry. Memory use
+ * therefore stays at the configured size and the table creates no garbage,
+ * at the price of forgetting entries.
+ * Only the hash is stored, so two states with the same 64-bit hash are
+ * treated as equal.
+ *
+ * The table is not thread-safe.
+ */
+public class TranspositionTable {
+    /** Value returned by {@link TranspositionTable#get(long)} for unknown hashes. */
+    public static final int MISSING = Integer.MIN_VALUE;
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int BUCKET_BYTES = ENTRY_BYTES * BUCKET_ENTRIES;
+
+    private final ByteBuffer buffer;
+    private final int bucketMask;
+    private int size;
+
+    /**
+     * @param bytes maximal size of the table in bytes, at least one bucket (64 bytes);
+     *              rounded down to a power of two
+     */
+    public TranspositionTable(long bytes) {
+        assert bytes >= BUCKET_BYTES;
+        long buckets = Long.highestOneBit(Math.min(bytes, Integer.MAX_VALUE) / BUCKET_BYTES);
+        this.buffer = ByteBuffer.allocateDirect((int) (buckets * BUCKET_BYTES)).order(ByteOrder.nativeOrder());
+        this.bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * Return the size of the table in bytes.
+     */
+    public int capacityBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Return the number of stored entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the value stored for the given hash or {@link TranspositionTable#MISSING}.
+     */
+    public int get(long hash) {
+        hash = normalise(hash);
+        int bucket = bucketOf(hash);
+        for (int i = 0; i < BUCKET_ENTRIES; i++) {
+            int entry = bucket + i * ENTRY_BYTES;
+            if (buffer.getLong(entry) == hash) {
+                return buffer.getInt(entry + 8);
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * Store the given value for the given hash, replacing an existing
+     * entry for the hash or, if the bucket is full, the entry with the
+     * lowest priority.
+     */
+    public void put(long hash, int value, int priority) {
+        hash = normalise(hash);
+        int bucket = bucketOf(hash);
+        int victim = -1;
+        int victimPriority = Integer.MAX_VALUE;
+        for (int i = 0; i < BUCKET_ENTRIES; i++) {
+            int entry = bucket + i * ENTRY_BYTES;
+            long stored = buffer.getLong(entry);
+            if (stored == hash) {
+                victim = entry;
+                break;
+            }
+            if (stored == 0) {
+                if (victimPriority != Integer.MIN_VALUE) {
+                    victim = entry;
+                    victimPriority = Integer.MIN_VALUE;
+                }
+                continue;
+            }
+            int storedPriority = buffer.getInt(entry + 12);
+            if (storedPriority < victimPriority) {
+                victim = entry;
+                victimPriority = storedPriority;
+            }
+        }
+
+        if (buffer.getLong(victim) == 0) {
+            size++;
+        }
+        buffer.putLong(victim, hash);
+        buffer.putInt(victim + 8, value);
+        buffer.putInt(victim + 12, priority);
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        for (int i = 0; i < buffer.capacity(); i += 8) {
+            buffer.putLong(i, 0);
+        }
+        size = 0;
+    }
+
+    private int bucketOf(long hash) {
+        return ((int) (hash ^ (hash >>> 32)) & bucketMask) * BUCKET_BYTES;
+    }
+
+    /**
+     * Hash 0 marks empty entries and is therefore mapped to another value.
+     */
+    private static long normalise(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+}
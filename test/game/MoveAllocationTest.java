@@ -0,0 +1,76 @@
+package sokoban.game;
+
+import org.junit.jupiter.api.Test;
+import sokoban.entity.Entity;
+import sokoban.entity.PlayerEntity;
+import sokoban.io.input.Action;
+import sokoban.io.input.ScriptedInputHandler;
+import sokoban.io.output.NullRenderer;
+import sokoban.parser.PlaintextParser;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that steps, pushes, collisions and undo do not allocate once the
+ * game is warmed up, measured with the allocation counter of the thread.
+ */
+class MoveAllocationTest {
+    private static final String LEVEL = "9 4\n"
+            + "#########\n"
+            + "#P  B  G#\n"
+            + "#  OX   #\n"
+            + "#########\n";
+
+    // steps, a push chain, an explosive destroying a breakable wall and
+    // undo of all of it, ending in the initial state
+    private static final Action[] ROUND = {
+            Action.MOVE_RIGHT, Action.MOVE_RIGHT, Action.MOVE_RIGHT, Action.MOVE_RIGHT,
+            Action.MOVE_LEFT, Action.MOVE_UP, Action.MOVE_DOWN, Action.MOVE_DOWN,
+            Action.MOVE_LEFT, Action.MOVE_LEFT, Action.MOVE_LEFT, Action.MOVE_UP,
+            Action.UNDO, Action.UNDO, Action.UNDO, Action.UNDO, Action.UNDO, Action.UNDO,
+            Action.UNDO, Action.UNDO, Action.UNDO, Action.UNDO, Action.UNDO, Action.UNDO,
+            Action.MOVE_DOWN, Action.MOVE_RIGHT, Action.MOVE_RIGHT,
+            Action.UNDO, Action.UNDO, Action.UNDO
+    };
+    private static final int WARM_UP_ROUNDS = 200_000;
+    private static final int MEASURED_ROUNDS = 10_000;
+    // the JIT may still be compiling parts of the path after the warm-up
+    private static final int ATTEMPTS = 5;
+
+    @Test
+    void movesDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Game game = new PlaintextParser(new NullRenderer(), new ScriptedInputHandler()).makeGameFromText(LEVEL);
+        PlayerEntity player = game.getPlayer();
+        Map<Entity, Point> initial = new HashMap<>(game.getPositions());
+        play(player, 1);
+        assertEquals(initial, game.getPositions(), "a round must end in the initial state");
+
+        play(player, WARM_UP_ROUNDS);
+        long allocated = -1;
+        for (int attempt = 0; attempt < ATTEMPTS && allocated != 0; attempt++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            play(player, MEASURED_ROUNDS);
+            allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        }
+        assertEquals(0, allocated, "bytes allocated by " + MEASURED_ROUNDS * ROUND.length + " actions");
+        assertEquals(initial, game.getPositions());
+    }
+
+    private static void play(PlayerEntity player, int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            for (Action action : ROUND) {
+                action.execute(player);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package sokoban.io.output;
+
+import org.junit.jupiter.api.Test;
+import sokoban.game.Game;
+import sokoban.game.LevelTemplate;
+import sokoban.io.input.Action;
+import sokoban.io.input.ScriptedInputHandler;
+import sokoban.parser.PlaintextParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plays random moves with undo and redo on generated levels and checks,
+ * with a small terminal emulator, that the screen drawn by the
+ * {@link AnsiRenderer} shows what the {@link PlaintextRenderer} prints
+ * after every frame, including the deadlock warning. Some frames are drawn only after more changes than
+ * {@link Game#CHANGE_LOG_SIZE}, where the renderer falls back to comparing
+ * the whole board.
+ */
+class AnsiRendererTest {
+    private static final Action[] ACTIONS = {
+            Action.MOVE_UP, Action.MOVE_DOWN, Action.MOVE_LEFT, Action.MOVE_RIGHT,
+            Action.UNDO, Action.REDO
+    };
+    private static final int LEVELS = 100;
+    private static final int FRAMES = 300;
+
+    @Test
+    void screenMatchesPlaintext() throws IOException {
+        Random random = new Random(5);
+        int fallbacks = 0, warnings = 0;
+        for (int level = 0; level < LEVELS; level++) {
+            LevelTemplate template = new PlaintextParser()
+                    .makeTemplateFromText(generate(7 + random.nextInt(6), 7 + random.nextInt(6), random));
+            Game.GameBuilder builder = template.newGameBuilder(new NullRenderer(), new ScriptedInputHandler());
+            builder.setDeadlockWarning(true);
+            Game game = builder.build();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            AnsiRenderer renderer = new AnsiRenderer(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+            Terminal terminal = new Terminal(game.getHeight() + 2, game.getWidth() + 80);
+            for (int frame = 0; frame < FRAMES; frame++) {
+                long changes = game.getChangeCount();
+                // every tenth frame is drawn after many actions
+                int actions = random.nextInt(10) == 0 ? 60 + random.nextInt(60) : 1 + random.nextInt(3);
+                for (int i = 0; i < actions; i++) {
+                    ACTIONS[random.nextInt(ACTIONS.length)].execute(game.getPlayer());
+                }
+                if (game.getChangeCount() - changes > Game.CHANGE_LOG_SIZE) {
+                    fallbacks++;
+                }
+                if (game.isDeadlocked()) {
+                    warnings++;
+                }
+
+                bytes.reset();
+                renderer.render(game);
+                terminal.apply(bytes.toString(StandardCharsets.UTF_8));
+                assertEquals(expected(game), terminal.lines(game.getHeight() + 1, game.getWidth()),
+                        "level " + level + ", frame " + frame);
+            }
+        }
+        assertTrue(fallbacks > 0, "no frame missed more than the logged changes");
+        assertTrue(warnings > 0, "no frame showed a deadlock");
+    }
+
+    /**
+     * Return the board as printed by the plaintext renderer, followed by
+     * the status line.
+     */
+    private static List<String> expected(Game game) {
+        StringBuilder text = new StringBuilder();
+        new PlaintextRenderer(text).render(game);
+        List<String> lines = new ArrayList<>(Arrays.asList(text.toString().split("\n", -1)));
+        lines = lines.subList(0, game.getHeight() + (game.isDeadlocked() ? 1 : 0));
+        if (!game.isDeadlocked()) {
+            lines.add("");
+        }
+        return lines;
+    }
+
+    /**
+     * Generate a walled level with some random walls, boxes, goals, an
+     * explosive and a breakable wall.
+     */
+    private static String generate(int width, int height, Random random) {
+        char[][] cells = new char[height][width];
+        List<int[]> free = new ArrayList<>();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean wall = x == 0 || y == 0 || x == width - 1 || y == height - 1 || random.nextInt(6) == 0;
+                cells[y][x] = wall ? '#' : ' ';
+                if (!wall) {
+                    free.add(new int[] {x, y});
+                }
+            }
+        }
+        Collections.shuffle(free, random);
+        int boxes = 2 + random.nextInt(3);
+        StringBuilder symbols = new StringBuilder("POX");
+        symbols.append("B".repeat(boxes)).append("G".repeat(boxes + random.nextInt(2)));
+        for (int i = 0; i < symbols.length(); i++) {
+            int[] cell = free.get(i);
+            cells[cell[1]][cell[0]] = symbols.charAt(i);
+        }
+
+        StringBuilder text = new StringBuilder().append(width).append(' ').append(height).append('\n');
+        for (char[] row : cells) {
+            text.append(row).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Screen of a terminal that understands the sequences of the renderer:
+     * cursor position (H), clear screen (J) and clear line (K).
+     */
+    private static class Terminal {
+        private final char[][] screen;
+        private int row, column;
+
+        Terminal(int rows, int columns) {
+            screen = new char[rows][columns];
+            clear();
+        }
+
+        void apply(String output) {
+            int i = 0;
+            while (i < output.length()) {
+                if (!output.startsWith("\u001b[", i)) {
+                    screen[row][column++] = output.charAt(i++);
+                    continue;
+                }
+                int end = i + 2;
+                while (!Character.isLetter(output.charAt(end))) {
+                    end++;
+                }
+                String arguments = output.substring(i + 2, end);
+                switch (output.charAt(end)) {
+                    case 'H':
+                        String[] position = arguments.split(";");
+                        row = Integer.parseInt(position[0]) - 1;
+                        column = Integer.parseInt(position[1]) - 1;
+                        break;
+                    case 'J':
+                        clear();
+                        break;
+                    case 'K':
+                        Arrays.fill(screen[row], ' ');
+                        break;
+                    default:
+                        throw new AssertionError("unexpected sequence " + output.charAt(end));
+                }
+                i = end + 1;
+            }
+        }
+
+        /**
+         * Return the first rows, the board rows cut to the given width and
+         * the last one without trailing blanks.
+         */
+        List<String> lines(int rows, int width) {
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < rows - 1; i++) {
+                lines.add(new String(screen[i], 0, width));
+            }
+            lines.add(new String(screen[rows - 1]).stripTrailing());
+            return lines;
+        }
+
+        private void clear() {
+            for (char[] line : screen) {
+                Arrays.fill(line, ' ');
+            }
+        }
+    }
+}